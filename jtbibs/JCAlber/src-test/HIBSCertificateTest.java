@@ -3,6 +3,7 @@ package demo;
 import java.io.*;
 import java.security.*;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
 
 
 import Entities.SecurityParams;
@@ -15,9 +16,11 @@ import iaik.pkcs.pkcs12.KeyBag;
 import iaik.pkcs.pkcs12.PKCS12;
 import iaik.security.ec.provider.ECCelerate;
 import iaik.security.hibe.HIBSAlgorithmParameterSpec;
+import iaik.security.hibe.HIBSChainVerifier;
 import iaik.security.hibe.HIBSDelPrivKey;
 import iaik.security.hibe.HIBSKeyPairParamSpec;
 import iaik.security.hibe.HIBSProvider;
+import iaik.security.hibe.HIBSPublicKey;
 import iaik.security.provider.IAIK;
 import iaik.utils.PemOutputStream;
 import iaik.x509.X509Certificate;
@@ -267,4 +270,49 @@ public class HIBSCertificateTest {
     }
   }
 
+  @Test
+  public void testCombinedChainVerification() {
+    try {
+      byte[] delData = "02.02.2020".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      KeyPairGenerator ca_kpg = KeyPairGenerator.getInstance("RSA");
+      ca_kpg.initialize(1024);
+      KeyPair ca_kp = ca_kpg.generateKeyPair();
+      final X509Certificate caCert = HibeDemoUtils.createCaCert(ca_kp);
+
+      HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+      KeyPairGenerator kpg = KeyPairGenerator.getInstance("HIBE");
+      kpg.initialize(params);
+      KeyPair kp = kpg.generateKeyPair();
+      final X509Certificate hibsCert = HibeDemoUtils.createCertSelfSigned(kp);
+
+      Signature sig = Signature.getInstance("HIBE");
+      sig.initSign(kp.getPrivate());
+      sig.update(delData);
+      HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+      sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData).setCompactSignature(true));
+      sig.initSign(delPrivKey);
+      sig.update(signData);
+      byte[] handshake = sig.sign();
+
+      HIBSPublicKey pk = (HIBSPublicKey) kp.getPublic();
+      Assert.assertTrue(new HIBSChainVerifier()
+          .addCertificate(caCert, ca_kp.getPublic())
+          .addCertificate(hibsCert, pk)
+          .addSignature(pk, Arrays.asList(delData), signData, handshake)
+          .verify());
+      Assert.assertFalse(new HIBSChainVerifier()
+          .addCertificate(hibsCert, pk)
+          .addSignature(pk, Arrays.asList(delData), "other data".getBytes(), handshake)
+          .verify());
+      Assert.assertFalse(new HIBSChainVerifier()
+          .addCertificate(hibsCert, ca_kp.getPublic())
+          .verify());
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail("Exception!");
+    }
+  }
+
 }
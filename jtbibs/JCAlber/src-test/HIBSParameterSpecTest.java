@@ -1,10 +1,16 @@
 package demo;
 
+import Entities.SecurityParams;
+import iaik.security.hibe.*;
 import org.apache.log4j.Logger;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TestName;
 
+import java.security.*;
+
 public class HIBSParameterSpecTest {
   private static Logger logger = Logger.getLogger(HIBSParameterSpecTest.class);
 
@@ -13,5 +19,66 @@ public class HIBSParameterSpecTest {
 
   @Before
   public void before() {
+    Security.addProvider(new HIBSProvider());
+  }
+
+  @Test
+  public void curveEncodedInParams() {
+    logger.info("Executing Test: " + mTestName.getMethodName());
+
+    try {
+      HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(1, new SecurityParams(HIBScurve.BN_P461));
+      HIBSPublicKey pubKey = new HIBSPublicKey(params, params.getG2().getGenerator());
+      HIBSPublicKey pubKey2 = new HIBSPublicKey(pubKey.getEncoded());
+
+      Assert.assertEquals(HIBScurve.BN_P461, pubKey2.getParams().getCurve());
+      Assert.assertEquals(pubKey, pubKey2);
+    } catch (InvalidKeyException e) {
+      e.printStackTrace();
+      Assert.fail("en/decoding wrong??");
+    }
+  }
+
+  @Test
+  public void mixedCurves() {
+    logger.info("Executing Test: " + mTestName.getMethodName());
+    byte[] signData = "Data to be signed.".getBytes();
+
+    try {
+      KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+      kg.initialize(HIBSKeyPairParamSpec.create(1, new SecurityParams(HIBScurve.BN_P256)));
+      KeyPair kp256 = kg.generateKeyPair();
+      kg.initialize(HIBSKeyPairParamSpec.create(1, new SecurityParams(HIBScurve.BN_P461)));
+      KeyPair kp461 = kg.generateKeyPair();
+
+      Signature sig = Signature.getInstance("HIBE");
+      sig.initSign(kp256.getPrivate());
+      sig.update(signData);
+      byte[] signature256 = sig.sign();
+
+      sig.initSign(kp461.getPrivate());
+      sig.update(signData);
+      byte[] signature461 = sig.sign();
+
+      sig.initVerify(kp256.getPublic());
+      sig.update(signData);
+      Assert.assertTrue(sig.verify(signature256));
+
+      sig.initVerify(kp461.getPublic());
+      sig.update(signData);
+      Assert.assertTrue(sig.verify(signature461));
+
+      sig.initVerify(kp461.getPublic());
+      sig.update(signData);
+      try {
+        sig.verify(signature256);
+        Assert.fail("Signature of another curve accepted!");
+      } catch (SignatureException e) {
+        logger.info(e.getMessage());
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail("Exception!");
+    }
   }
 }
@@ -1,14 +1,32 @@
 package demo;
 
+import Entities.DelegatedSecretKey;
+import Entities.IdentityHash;
+import Entities.IdentityPath;
 import Entities.SecurityParams;
+import HIBE.Hibe;
 import iaik.security.hibe.*;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class HIBSStandardTest {
   private static Logger logger = Logger.getLogger(HIBSStandardTest.class);
@@ -360,5 +378,709 @@ public class HIBSStandardTest {
       }
     }
 
+    @Test
+    public void VerificationContextTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData1 = "domain".getBytes();
+      byte[] delData2 = "02.02.2020".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(3, new SecurityParams());
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData1);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData1));
+        sig.initSign(delPrivKey);
+        sig.update(delData2);
+        HIBSDelPrivKey delPrivKey2 = new HIBSDelPrivKey(sig.sign());
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData1, delData2));
+        sig.initSign(delPrivKey2);
+        sig.update(signData);
+        byte[] signature = sig.sign();
+
+        HIBSVerificationContext context = HIBSVerificationContext.forKey((HIBSPublicKey) kp.getPublic());
+        DelegatedSecretKey decoded = new HIBSDelPrivKey(signature).getDelSecK();
+        List<byte[]> ids = Arrays.asList(delData1, delData2);
+
+        Assert.assertTrue(context.verify(ids, signData, decoded));
+        Assert.assertEquals(2, context.getCachedPrefixes());
+        // second run is served from the cache
+        Assert.assertTrue(context.verify(ids, signData, decoded));
+        Assert.assertEquals(2, context.getCachedPrefixes());
+        Assert.assertFalse(context.verify(Arrays.asList(delData1, "02.02.2000".getBytes()), signData, decoded));
+        Assert.assertFalse(context.verify(ids, "other data".getBytes(), decoded));
+        Assert.assertSame(context, HIBSVerificationContext.forKey(new HIBSPublicKey(kp.getPublic().getEncoded())));
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void CompactSignatureTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initSign(delPrivKey);
+        sig.update(signData);
+        byte[] full = sig.sign();
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData).setCompactSignature(true));
+        sig.initSign(delPrivKey);
+        sig.update(signData);
+        byte[] compact = sig.sign();
+        Assert.assertTrue(compact.length < full.length);
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(compact));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(full));
+        sig.initVerify(kp.getPublic());
+        sig.update("other data".getBytes());
+        Assert.assertFalse(sig.verify(compact));
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void PrecomputedNoncesTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData1 = "domain".getBytes();
+      byte[] delData2 = "02.02.2020".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(3, new SecurityParams());
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData1);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData1));
+        sig.initSign(delPrivKey);
+        sig.update(delData2);
+        HIBSDelPrivKey delPrivKey2 = new HIBSDelPrivKey(sig.sign());
+
+        HIBSAlgorithmParameterSpec spec = new HIBSAlgorithmParameterSpec().addDelegateIDs(delData1, delData2)
+            .setCompactSignature(true).setPrecomputedNonces(true);
+        // more signatures than the pool holds
+        for (int i = 0; i < HIBSNoncePool.POOL_SIZE + 5; i++) {
+          byte[] signData = ("handshake " + i).getBytes();
+          sig.setParameter(spec);
+          sig.initSign(delPrivKey2);
+          sig.update(signData);
+          byte[] signature = sig.sign();
+
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData1, delData2));
+          sig.initVerify(kp.getPublic());
+          sig.update(signData);
+          Assert.assertTrue(sig.verify(signature));
+        }
+        Assert.assertSame(HIBSNoncePool.forKey(delPrivKey2, Arrays.asList(delData1, delData2)),
+            HIBSNoncePool.forKey(new HIBSDelPrivKey(delPrivKey2.getEncoded()), Arrays.asList(delData1, delData2)));
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void BatchSignerTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+          messages.add(("artifact " + i).getBytes());
+        }
+        for (boolean compact : new boolean[]{true, false}) {
+          List<byte[]> signatures = new HIBSBatchSigner(delPrivKey, Arrays.asList(delData), compact).sign(messages);
+          Assert.assertEquals(messages.size(), signatures.size());
+          for (int i = 0; i < messages.size(); i++) {
+            sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+            sig.initVerify(kp.getPublic());
+            sig.update(messages.get(i));
+            Assert.assertTrue(sig.verify(signatures.get(i)));
+          }
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void PointCompressionTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+        byte[] uncompressedKey = kp.getPublic().getEncoded();
+
+        HIBSKeyPairParamSpec compressed = params.withPointCompression(true);
+        Assert.assertArrayEquals(params.getDigest(), compressed.getDigest());
+        HIBSPublicKey compressedKey = new HIBSPublicKey(compressed, ((HIBSPublicKey) kp.getPublic()).getP());
+        Assert.assertTrue(compressedKey.getEncoded().length < uncompressedKey.length);
+        Assert.assertEquals(((HIBSPublicKey) kp.getPublic()).getP(),
+            new HIBSPublicKey(compressedKey.getEncoded()).getP());
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(new HIBSPrivateKey(compressed, ((HIBSPrivateKey) kp.getPrivate()).getP()));
+        sig.update(delData);
+        byte[] delegated = sig.sign();
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(compressed, new HIBSDelPrivKey(delegated).getDelSecK());
+
+        for (boolean compact : new boolean[]{true, false}) {
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData).setCompactSignature(compact));
+          sig.initSign(delPrivKey);
+          sig.update(signData);
+          byte[] signature = sig.sign();
+
+          // verified with the uncompressed key
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+          sig.initVerify(new HIBSPublicKey(uncompressedKey));
+          sig.update(signData);
+          Assert.assertTrue(sig.verify(signature));
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void StreamingAndPrehashedTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = new byte[1 << 20];
+      new java.util.Random(1).nextBytes(signData);
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+
+        // streamed from a direct buffer in chunks
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initSign(delPrivKey);
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(signData.length);
+        buffer.put(signData).flip();
+        for (int pos = 0; pos < signData.length; pos += 4096) {
+          buffer.limit(Math.min(pos + 4096, signData.length));
+          sig.update(buffer); // advances the position to the limit
+        }
+        byte[] signature = sig.sign();
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(signature));
+
+        // the pre-hashed engine expands the digest, not the data, for XMD parameters
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(signData);
+        Signature none = Signature.getInstance("NONEwithHIBE");
+        none.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        none.initVerify(kp.getPublic());
+        none.update(digest);
+        Assert.assertFalse(none.verify(signature));
+
+        none.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        none.initSign(delPrivKey);
+        none.update(digest);
+        byte[] prehashed = none.sign();
+        none.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        none.initVerify(kp.getPublic());
+        none.update(digest);
+        Assert.assertTrue(none.verify(prehashed));
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertFalse(sig.verify(prehashed));
+
+        none.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        none.initSign(delPrivKey);
+        none.update(signData, 0, 16);
+        try {
+          none.sign();
+          Assert.fail("Digest of wrong length accepted");
+        } catch (SignatureException e) {
+          // expected
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void HashVersionTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "test test test sign".getBytes();
+
+      try {
+        // parameters from before the hash was versioned keep their encoding and hash
+        HIBSKeyPairParamSpec legacy = HIBSKeyPairParamSpec.generateToSpec(
+            Hibe.getInstance().setUp(2, new SecurityParams()));
+        HIBSKeyPairParamSpec current = HIBSKeyPairParamSpec.createExplicit(2, new SecurityParams());
+        Assert.assertEquals(IdentityHash.Version.REJECTION_SAMPLING, legacy.getHashVersion());
+        Assert.assertEquals(IdentityHash.Version.EXPAND_XMD, current.getHashVersion());
+        Assert.assertEquals(8, legacy.toASN1Object().countComponents());
+        Assert.assertEquals(9, current.toASN1Object().countComponents());
+
+        for (HIBSKeyPairParamSpec params : new HIBSKeyPairParamSpec[]{legacy, current}) {
+          HIBSKeyPairParamSpec decoded = HIBSKeyPairParamSpec.decode(params.toASN1Object());
+          Assert.assertEquals(params.getHashVersion(), decoded.getHashVersion());
+
+          KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+          kg.initialize(params);
+          KeyPair kp = kg.generateKeyPair();
+
+          Signature sig = Signature.getInstance("HIBE");
+          sig.initSign(kp.getPrivate());
+          sig.update(delData);
+          HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+          Assert.assertEquals(params.getHashVersion(), delPrivKey.getParams().getHashVersion());
+
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+          sig.initSign(delPrivKey);
+          sig.update(signData);
+          byte[] signature = sig.sign();
+
+          HIBSPublicKey pubKey = new HIBSPublicKey(kp.getPublic().getEncoded());
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+          sig.initVerify(pubKey);
+          sig.update(signData);
+          Assert.assertTrue(sig.verify(signature));
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void SeededParametersTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] signData = "test test test sign".getBytes();
+      byte[] seed = "seed of the test parameters".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(3, new SecurityParams(), seed);
+        HIBSKeyPairParamSpec same = HIBSKeyPairParamSpec.create(3, new SecurityParams(), seed);
+        HIBSKeyPairParamSpec explicit = HIBSKeyPairParamSpec.createExplicit(3, new SecurityParams());
+        Assert.assertEquals(params.getPP().g2, same.getPP().g2);
+        Assert.assertEquals(params.getPP().h, same.getPP().h);
+        Assert.assertNotEquals(params.getPP().g3, HIBSKeyPairParamSpec.create(3, new SecurityParams()).getPP().g3);
+        Assert.assertTrue(iaik.asn1.DerCoder.encode(params.toASN1Object()).length + 500
+            < iaik.asn1.DerCoder.encode(explicit.toASN1Object()).length);
+
+        HIBSKeyPairParamSpec decoded = HIBSKeyPairParamSpec.decode(params.toASN1Object());
+        Assert.assertArrayEquals(seed, decoded.getSeed());
+        Assert.assertEquals(params.getPP().g3, decoded.getPP().g3);
+        // decoded once, then taken from the cache
+        Assert.assertSame(decoded, HIBSKeyPairParamSpec.decode(params.toASN1Object()));
+
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(signData);
+        byte[] signature = sig.sign();
+
+        sig.initVerify(new HIBSPublicKey(kp.getPublic().getEncoded()));
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(signature));
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void ParameterReferenceTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.createExplicit(2, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+        byte[] fullKey = kp.getPublic().getEncoded();
+        Assert.assertArrayEquals(params.getDigest(), HIBSKeyPairParamSpec.decode(params.toASN1Object()).getDigest());
+
+        HIBSKeyPairParamSpec referencing = params.withParameterReferences(true);
+        HIBSPublicKey referencingKey = new HIBSPublicKey(referencing, ((HIBSPublicKey) kp.getPublic()).getP());
+        Assert.assertTrue(referencingKey.getEncoded().length + 500 < fullKey.length);
+        try {
+          new HIBSPublicKey(referencingKey.getEncoded());
+          Assert.fail("Unregistered parameters decoded");
+        } catch (InvalidKeyException e) {
+          // expected, encoding registers nothing
+        }
+
+        HIBSParameterRegistry.register(referencing);
+        try {
+          Assert.assertSame(referencing, new HIBSPublicKey(referencingKey.getEncoded()).getParams());
+
+          Signature sig = Signature.getInstance("HIBE");
+          sig.initSign(new HIBSPrivateKey(referencing, ((HIBSPrivateKey) kp.getPrivate()).getP()));
+          sig.update(delData);
+          HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+          Assert.assertSame(referencing, delPrivKey.getParams());
+
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+          sig.initSign(delPrivKey);
+          sig.update(signData);
+          byte[] signature = sig.sign();
+
+          // verified with the key carrying the full parameters
+          sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+          sig.initVerify(new HIBSPublicKey(fullKey));
+          sig.update(signData);
+          Assert.assertTrue(sig.verify(signature));
+        } finally {
+          HIBSParameterRegistry.unregister(referencing);
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void RawCodecTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+        IdentityPath path = IdentityPath.of(params.getSharedPP(), delData);
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+        HIBSRawCodec.writePublicParams(buffer, params);
+        HIBSRawCodec.writePublicKey(buffer, (HIBSPublicKey) kp.getPublic());
+        HIBSRawCodec.writeSecretKey(buffer, (HIBSPrivateKey) kp.getPrivate());
+        HIBSRawCodec.writeDelegatedKey(buffer, delPrivKey, path);
+        buffer.flip();
+
+        // L - 1 as little endian 64 bit integer
+        Assert.assertEquals(1, buffer.get(0));
+        Assert.assertEquals(0, buffer.get(7));
+        Assert.assertEquals(1, HIBSRawCodec.readPublicParamsLevels(buffer));
+        HIBSPublicKey pubKey = HIBSRawCodec.readPublicKey(buffer, params);
+        Assert.assertEquals(((HIBSPublicKey) kp.getPublic()).getP(), pubKey.getP());
+        HIBSPrivateKey privKey = HIBSRawCodec.readSecretKey(buffer, params);
+        Assert.assertEquals(((HIBSPrivateKey) kp.getPrivate()).getP(), privKey.getP());
+        HIBSDelPrivKey readDelKey = HIBSRawCodec.readDelegatedKey(buffer, params, path);
+        Assert.assertFalse(buffer.hasRemaining());
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initSign(readDelKey);
+        sig.update(signData);
+        byte[] signature = sig.sign();
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initVerify(pubKey);
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(signature));
+
+        DelegatedSecretKey decoded = params.getHibe().sign(params.getSharedPP(), path, readDelKey.getDelSecK(), signData);
+        ByteBuffer raw = ByteBuffer.allocate(HIBSRawCodec.maxSignatureLength(params));
+        HIBSRawCodec.writeSignature(raw, decoded);
+        Assert.assertFalse(raw.hasRemaining());
+        raw.flip();
+        DelegatedSecretKey rawSig = HIBSRawCodec.readSignature(raw, params, 2);
+        Assert.assertEquals(decoded.a0, rawSig.a0);
+        Assert.assertEquals(decoded.a1, rawSig.a1);
+
+        raw.flip().limit(raw.limit() - 1);
+        try {
+          HIBSRawCodec.readSignature(raw, params, 2);
+          Assert.fail("Truncated signature decoded");
+        } catch (SignatureException e) {
+          // expected
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void KeyStoreTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] delData = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(delData);
+        HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sig.sign());
+
+        File file = File.createTempFile("hibe", ".ks");
+        file.deleteOnExit();
+        KeyStore ks = KeyStore.getInstance("HIBE");
+        ks.load(new HIBSKeyStore.FileParameter(file, 64, 4096));
+        ks.setEntry("master", new HIBSKeyStore.KeyEntry(kp.getPrivate()), null);
+        for (int i = 0; i < 20; i++) {
+          ks.setEntry("tenant" + i, new HIBSKeyStore.KeyEntry(delPrivKey), null);
+        }
+        ks.deleteEntry("tenant3");
+        // replaced by a new record, the old one is not returned anymore
+        ks.setEntry("tenant5", new HIBSKeyStore.KeyEntry(kp.getPrivate()), null);
+        Assert.assertTrue(ks.getKey("tenant5", null) instanceof HIBSPrivateKey);
+        ks.store(null, null);
+        Assert.assertEquals(20, ks.size());
+
+        // reopened read only and used after the stream is closed, as usual for key stores
+        KeyStore reopened = KeyStore.getInstance("HIBE");
+        try (FileInputStream in = new FileInputStream(file)) {
+          reopened.load(in, null);
+        }
+        Assert.assertEquals(20, reopened.size());
+        Assert.assertFalse(reopened.containsAlias("tenant3"));
+        Assert.assertTrue(reopened.containsAlias("tenant19"));
+        Assert.assertEquals(20, Collections.list(reopened.aliases()).size());
+        Assert.assertNotNull(reopened.getCreationDate("master"));
+        Assert.assertArrayEquals(kp.getPrivate().getEncoded(), reopened.getKey("master", null).getEncoded());
+
+        PrivateKey stored = (PrivateKey) reopened.getKey("tenant7", null);
+        Assert.assertTrue(stored instanceof HIBSDelPrivKey);
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initSign(stored);
+        sig.update(signData);
+        byte[] signature = sig.sign();
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(delData));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(signature));
+
+        try {
+          reopened.setEntry("other", new HIBSKeyStore.KeyEntry(delPrivKey), null);
+          Assert.fail("Read only key store written");
+        } catch (KeyStoreException e) {
+          // expected
+        }
+
+        // 3/4 of the 64 slots are used
+        try {
+          for (int i = 20; i < 64; i++) {
+            ks.setEntry("tenant" + i, new HIBSKeyStore.KeyEntry(delPrivKey), null);
+          }
+          Assert.fail("Full key store written");
+        } catch (KeyStoreException e) {
+          // expected
+        }
+
+        // records of deleted and replaced entries are reused, a full store keeps working
+        for (int round = 0; round < 4; round++) {
+          for (int i = 20; i < 40; i++) {
+            ks.deleteEntry("tenant" + i);
+            ks.setEntry("tenant" + i, new HIBSKeyStore.KeyEntry(delPrivKey), null);
+            ks.setEntry("master", new HIBSKeyStore.KeyEntry(kp.getPrivate()), null);
+          }
+        }
+        Assert.assertEquals(48, ks.size());
+        Assert.assertEquals(48, Collections.list(ks.aliases()).size());
+        Assert.assertTrue(ks.getKey("tenant25", null) instanceof HIBSDelPrivKey);
+
+        // loading again closes the previous file first
+        ks.load(new HIBSKeyStore.FileParameter(file, 64, 4096));
+        Assert.assertEquals(48, ks.size());
+        Assert.assertTrue(ks.getKey("tenant25", null) instanceof HIBSDelPrivKey);
+
+        // there is no in-memory mode
+        try {
+          KeyStore.getInstance("HIBE").load(null, null);
+          Assert.fail("Key store loaded without a file");
+        } catch (java.io.IOException e) {
+          // expected
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
+    @Test
+    public void EpochKeyManagerTest() {
+      Security.addProvider(new HIBSProvider());
+      byte[] domain = "domain".getBytes();
+      byte[] signData = "Data to be signed.".getBytes();
+
+      Instant time = Instant.parse("2020-02-02T23:59:30.500Z");
+      Assert.assertEquals(Instant.parse("2020-02-02T23:00:00Z"),
+          HIBSUtils.getEpochStart(HIBSUtils.EpochGranularity.Hour, time));
+      Assert.assertEquals(Instant.parse("2020-03-01T00:00:00Z"),
+          HIBSUtils.getNextEpochStart(HIBSUtils.EpochGranularity.Month, time));
+      Assert.assertEquals(Instant.parse("2021-01-01T00:00:00Z"),
+          HIBSUtils.getNextEpochStart(HIBSUtils.EpochGranularity.Year, time));
+      Assert.assertArrayEquals("2020-02-02T00:00:00Z".getBytes(), HIBSUtils.getEpoch(HIBSUtils.EpochGranularity.Day, time));
+
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(3, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        Signature sig = Signature.getInstance("HIBE");
+        sig.initSign(kp.getPrivate());
+        sig.update(domain);
+        HIBSDelPrivKey domainKey = new HIBSDelPrivKey(sig.sign());
+
+        // the scheduled rollover is far away, the test clock is moved instead
+        AtomicReference<Instant> now = new AtomicReference<>(time);
+        Clock clock = new Clock() {
+          @Override
+          public ZoneId getZone() {
+            return ZoneOffset.UTC;
+          }
+
+          @Override
+          public Clock withZone(ZoneId zone) {
+            return this;
+          }
+
+          @Override
+          public Instant instant() {
+            return now.get();
+          }
+        };
+        HIBSEpochKeyManager manager = new HIBSEpochKeyManager(domainKey, Collections.singletonList(domain),
+            HIBSUtils.EpochGranularity.Minutes, clock, executor);
+        Assert.assertTrue(manager.isDelegatedTo(domain));
+
+        HIBSEpochKeyManager.EpochKey first = manager.getCurrent();
+        Assert.assertArrayEquals("2020-02-02T23:59:00Z".getBytes(), first.getEpoch());
+        Assert.assertSame(first, manager.getCurrent());
+        HIBSNoncePool firstPool = HIBSNoncePool.forKey(first.getKey(), first.getIDs());
+
+        now.set(Instant.parse("2020-02-03T00:00:00Z"));
+        HIBSEpochKeyManager.EpochKey second = manager.getCurrent();
+        Assert.assertArrayEquals("2020-02-03T00:00:00Z".getBytes(), second.getEpoch());
+        Assert.assertEquals(2, second.getIDs().size());
+
+        // the pool of the expired key was dropped at the rollover
+        Assert.assertNotSame(firstPool, HIBSNoncePool.forKey(first.getKey(), first.getIDs()));
+        HIBSNoncePool.evict(first.getKey(), first.getIDs());
+
+        sig.setParameter(second.newParameterSpec());
+        sig.initSign(second.getKey());
+        sig.update(signData);
+        byte[] signature = sig.sign();
+
+        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(domain, second.getEpoch()));
+        sig.initVerify(kp.getPublic());
+        sig.update(signData);
+        Assert.assertTrue(sig.verify(signature));
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    @Test
+    public void InvalidKeyPointTest() {
+      Security.addProvider(new HIBSProvider());
+      try {
+        HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+        KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+        kg.initialize(params);
+        KeyPair kp = kg.generateKeyPair();
+
+        // the point is decoded lazily, the key is rejected when the signature is initialized
+        byte[] encoded = kp.getPublic().getEncoded();
+        encoded[encoded.length - 1] ^= 1;
+        HIBSPublicKey publicKey = new HIBSPublicKey(encoded);
+        Signature sig = Signature.getInstance("HIBE");
+        try {
+          sig.initVerify(publicKey);
+          Assert.fail("Invalid public key accepted");
+        } catch (InvalidKeyException e) {
+          // expected
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        Assert.fail("Exception!");
+      }
+    }
+
     //TODO test more cases
   }
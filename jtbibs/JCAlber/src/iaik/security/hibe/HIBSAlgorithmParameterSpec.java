@@ -8,6 +8,8 @@ import java.util.List;
 public class HIBSAlgorithmParameterSpec implements AlgorithmParameterSpec {
 
     List<byte[]> mIDs = new ArrayList<>();
+    boolean mCompact = false;
+    boolean mPrecomputedNonces = false;
 
     public HIBSAlgorithmParameterSpec() {
     }
@@ -18,6 +20,24 @@ public class HIBSAlgorithmParameterSpec implements AlgorithmParameterSpec {
         return this;
     }
 
+    /**
+     * Produce compact leaf signatures consisting only of a_0 and a_1. They are shorter and faster
+     * to create, but can not be used as delegated keys. Verification detects the format itself.
+     */
+    public HIBSAlgorithmParameterSpec setCompactSignature(boolean compact){
+        mCompact = compact;
+        return this;
+    }
+
+    /**
+     * Take the randomness of compact signatures with a delegated key from a pool precomputed in
+     * the background, see {@link HIBSNoncePool}. Only applies together with compact signatures.
+     */
+    public HIBSAlgorithmParameterSpec setPrecomputedNonces(boolean precomputed){
+        mPrecomputedNonces = precomputed;
+        return this;
+    }
+
     boolean complete() { // check for the case the will need more parameters than IDs
         return mIDs != null;
     }
@@ -0,0 +1,103 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import Entities.IdentityPath;
+import Entities.PublicParams;
+import HIBE.Hibe;
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Signs many messages with one key, spread over a fork-join pool.
+ * <p>
+ * The key is decoded and the engine looked up once per signer. The first message is signed on the
+ * calling thread, which builds the shared precomputation (the identity product in the key and the
+ * fixed-base tables of the parameters); all other messages are then signed in parallel.
+ * Signatures are the same as those of {@link HIBSWithSHA256Signature} with the same parameters.
+ */
+public class HIBSBatchSigner {
+
+  private final Hibe mHibe;
+  private final HIBSKeyPairParamSpec mParams;
+  private final ECPoint mMasterKey;
+  private final DelegatedSecretKey mDelegatedKey;
+  private final PublicParams mPP;
+  private final IdentityPath mPath;
+  private final boolean mCompact;
+  private final ForkJoinPool mPool;
+
+  /**
+   * Signer using the common fork-join pool.
+   *
+   * @param key     a {@link HIBSPrivateKey} or {@link HIBSDelPrivKey}
+   * @param ids     identities the key was delegated to
+   * @param compact produce compact signatures, see {@link HIBSAlgorithmParameterSpec#setCompactSignature}
+   */
+  public HIBSBatchSigner(PrivateKey key, List<byte[]> ids, boolean compact) throws HIBSInvalidKeyException {
+    this(key, ids, compact, ForkJoinPool.commonPool());
+  }
+
+  public HIBSBatchSigner(PrivateKey key, List<byte[]> ids, boolean compact, ForkJoinPool pool)
+      throws HIBSInvalidKeyException {
+    if (key instanceof HIBSPrivateKey) {
+      if (!ids.isEmpty())
+        throw new HIBSInvalidKeyException("Number of IDs not matching delegation depth");
+      mParams = ((HIBSPrivateKey) key).getParams();
+      mMasterKey = ((HIBSPrivateKey) key).getP();
+      mDelegatedKey = null;
+    } else if (key instanceof HIBSDelPrivKey) {
+      mParams = ((HIBSDelPrivKey) key).getParams();
+      mMasterKey = null;
+      mDelegatedKey = ((HIBSDelPrivKey) key).getDelSecK();
+      if (ids.size() != mDelegatedKey.depth)
+        throw new HIBSInvalidKeyException("Number of IDs not matching delegation depth");
+    } else
+      throw new HIBSInvalidKeyException("Trying to sign with unsupported private key!");
+
+    mPP = mParams.getSharedPP();
+    mPath = IdentityPath.of(mPP, ids);
+    mHibe = mParams.getHibe();
+    mCompact = compact;
+    mPool = pool;
+  }
+
+  /**
+   * @return the encoded signatures, in the order of <code>messages</code>
+   */
+  public List<byte[]> sign(List<byte[]> messages) throws HIBSSignaturException {
+    byte[][] signatures = new byte[messages.size()][];
+    if (messages.isEmpty())
+      return Collections.emptyList();
+
+    signatures[0] = sign(messages.get(0));
+    try {
+      mPool.submit(() -> IntStream.range(1, messages.size()).parallel()
+          .forEach(i -> signatures[i] = sign(messages.get(i)))).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HIBSSignaturException("Batch signing interrupted");
+    } catch (ExecutionException e) {
+      throw new HIBSSignaturException("Batch signing failed: " + e.getCause().getMessage());
+    }
+    return Arrays.asList(signatures);
+  }
+
+  private byte[] sign(byte[] message) {
+    BigInteger msgHash = HIBSWithSHA256Signature.hashMessage(mPP, message);
+    DelegatedSecretKey ds;
+    if (mMasterKey != null) {
+      ds = mCompact ? mHibe.sign(mPP, mMasterKey, msgHash) : mHibe.delegation(mPP, mPath, mMasterKey, msgHash);
+    } else {
+      ds = mCompact ? mHibe.sign(mPP, mPath, mDelegatedKey, msgHash) : mHibe.delegation(mPP, mPath, mDelegatedKey, msgHash);
+    }
+    return mCompact ? HIBSCompactSignature.encode(ds, mParams) : new HIBSDelPrivKey(mParams, ds).getEncoded();
+  }
+}
@@ -0,0 +1,86 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import HIBE.Hibe;
+import HIBE.PairingBatch;
+import org.apache.log4j.Logger;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verifies the HIBS signatures of a certificate path together with a handshake signature.
+ * <p>
+ * Instead of one pairing product and final exponentiation per signature, the verification
+ * equations of all signatures on the same curve are merged into one randomized multi-pairing,
+ * see {@link PairingBatch}. Certificates signed with other algorithms are verified directly when
+ * added. Use a new verifier per path, it is not safe to be used by several threads at once.
+ */
+public class HIBSChainVerifier {
+  private static Logger logger = Logger.getLogger(HIBSChainVerifier.class);
+
+  private final Map<Hibe, PairingBatch> mBatches = new LinkedHashMap<>();
+  private boolean mFailed = false;
+
+  /**
+   * Adds the signature of <code>cert</code>, which was issued by the owner of <code>issuerKey</code>.
+   */
+  public HIBSChainVerifier addCertificate(X509Certificate cert, PublicKey issuerKey) {
+    if (!(issuerKey instanceof HIBSPublicKey)) {
+      try {
+        cert.verify(issuerKey);
+      } catch (GeneralSecurityException e) {
+        logger.info("certificate signature invalid: " + e.getMessage());
+        mFailed = true;
+      }
+      return this;
+    }
+    try {
+      // certificates are signed with the issuer key itself, not below any identity
+      return addSignature((HIBSPublicKey) issuerKey, Collections.emptyList(), cert.getTBSCertificate(),
+          cert.getSignature());
+    } catch (GeneralSecurityException e) {
+      logger.info("certificate not decodable: " + e.getMessage());
+      mFailed = true;
+      return this;
+    }
+  }
+
+  /**
+   * Adds a signature on <code>message</code> created with a key delegated to <code>ids</code>,
+   * e.g. the CertificateVerify of a handshake below domain and epoch.
+   */
+  public HIBSChainVerifier addSignature(HIBSPublicKey key, List<byte[]> ids, byte[] message, byte[] signature) {
+    DelegatedSecretKey decoded;
+    try {
+      decoded = HIBSWithSHA256Signature.decodeSignature(signature, ids.size(), key.getParams());
+    } catch (SignatureException e) {
+      mFailed = true;
+      return this;
+    }
+    HIBSVerificationContext context = HIBSVerificationContext.forKey(key);
+    PairingBatch batch = mBatches.computeIfAbsent(context.getHibe(), Hibe::newBatch);
+    context.addToBatch(batch, new ArrayList<>(ids), message, decoded);
+    return this;
+  }
+
+  /**
+   * @return <code>true</code> if all added signatures are valid
+   */
+  public boolean verify() {
+    if (mFailed)
+      return false;
+    for (PairingBatch batch : mBatches.values()) {
+      if (!batch.verify())
+        return false;
+    }
+    return true;
+  }
+}
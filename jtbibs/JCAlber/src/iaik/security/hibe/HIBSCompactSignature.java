@@ -0,0 +1,54 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import iaik.security.ec.errorhandling.DecodingException;
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact encoding of leaf signatures: the encoded points a_0 || a_1 without any ASN.1
+ * framing, parameters or b components, see {@link HIBSPointCodec} for the point encoding.
+ * The curve and depth are taken from the verifying public key and the IDs fed for verification.
+ * <p>
+ * A compact signature starts with a point encoding tag and can therefore be told apart
+ * from a PKCS#8 encoded {@link HIBSDelPrivKey}, which starts with a SEQUENCE tag.
+ */
+final class HIBSCompactSignature {
+
+  private static final byte ASN1_SEQUENCE_TAG = 0x30;
+
+  private HIBSCompactSignature() {
+  }
+
+  static boolean isCompact(byte[] sigBytes) {
+    return sigBytes.length > 0 && sigBytes[0] != ASN1_SEQUENCE_TAG;
+  }
+
+  static byte[] encode(DelegatedSecretKey ds, HIBSKeyPairParamSpec params) {
+    byte[] a0 = HIBSPointCodec.encode(ds.a0, params.isPointCompression());
+    byte[] a1 = HIBSPointCodec.encode(ds.a1, params.isPointCompression());
+    byte[] sig = Arrays.copyOf(a0, a0.length + a1.length);
+    System.arraycopy(a1, 0, sig, a0.length, a1.length);
+    return sig;
+  }
+
+  static DelegatedSecretKey decode(byte[] sigBytes, int depth, HIBSKeyPairParamSpec params)
+      throws HIBSSignaturException {
+    // each point may be compressed or not
+    int a0Length = HIBSPointCodec.encodedLength(sigBytes[0], params.getG1().getGenerator().encodePoint().length);
+    int a1Uncompressed = params.getG2().getGenerator().encodePoint().length;
+    if (sigBytes.length <= a0Length
+        || sigBytes.length != a0Length + HIBSPointCodec.encodedLength(sigBytes[a0Length], a1Uncompressed))
+      throw new HIBSSignaturException("Compact signature has wrong length for curve " + params.getCurve());
+
+    try {
+      ECPoint a0 = params.getG1().decodePoint(Arrays.copyOfRange(sigBytes, 0, a0Length));
+      ECPoint a1 = params.getG2().decodePoint(Arrays.copyOfRange(sigBytes, a0Length, sigBytes.length));
+      return new DelegatedSecretKey(a0, a1, new ArrayList<>(), depth);
+    } catch (DecodingException e) {
+      throw new HIBSSignaturException("Compact signature not decodable!");
+    }
+  }
+}
@@ -1,12 +1,12 @@
 package iaik.security.hibe;
 
 import Entities.DelegatedSecretKey;
+import Entities.LazyPointList;
 import Entities.PublicParams;
 import HIBE.Hibe;
 import iaik.asn1.*;
 import iaik.asn1.structures.AlgorithmID;
 import iaik.pkcs.pkcs8.PrivateKeyInfo;
-import iaik.security.ec.errorhandling.DecodingException;
 import iaik.security.ec.math.curve.ECPoint;
 
 import java.io.IOException;
@@ -15,9 +15,16 @@ import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Delegated HIBE private key, also the encoding of full signatures.
+ * <p>
+ * Decoding only parses the ASN.1 structure, the points are decoded when the key is first used,
+ * the b components one by one. Keys that are only stored or forwarded cost no point arithmetic.
+ */
 public class HIBSDelPrivKey extends PrivateKeyInfo {
 
-  private DelegatedSecretKey mKey;
+  private volatile DelegatedSecretKey mKey;
+  private transient EncodedDelKey mEncoded; // until mKey is decoded
   private transient byte[] encodedDelPrivKey_;
 
   public static final INTEGER EC_PRIVATE_KEY_VERSION = new INTEGER(334);
@@ -44,7 +51,6 @@ public class HIBSDelPrivKey extends PrivateKeyInfo {
 
   @Override
   protected void decode(byte[] privateDelKey) throws InvalidKeyException {
-    Hibe hibe = new Hibe();
     encodedDelPrivKey_ = privateDelKey;
 
     final ASN1Object parameters = private_key_algorithm.getParameter();
@@ -59,35 +65,60 @@ public class HIBSDelPrivKey extends PrivateKeyInfo {
         throw new HIBSInvalidKeyException("Signature must be ASN.1 SEQUENCE!");
       }
 
-      mKey = decodeDelKey(hibe, asn1);
+      mEncoded = decodeDelKey(asn1);
       params_ = params;
 
-    } catch (CodingException | IOException | DecodingException e) {
+    } catch (CodingException | IOException | ClassCastException e) {
       throw new HIBSInvalidKeyException("PrivDelKey not decodable!");
     }
   }
 
-  static DelegatedSecretKey decodeDelKey(Hibe hibe, ASN1 asn1) throws DecodingException, IOException {
+  /**
+   * Parses the structure of an encoded key, the points stay encoded.
+   */
+  static EncodedDelKey decodeDelKey(ASN1 asn1) throws CodingException, IOException {
     SEQUENCE s = (SEQUENCE) asn1.toASN1Object();
     BigInteger depth = (BigInteger) s.getComponentAt(0).getValue();
-    ECPoint a0 = hibe.getPairing().getGroup1().decodePoint(((OCTET_STRING) s.getComponentAt(1)).getWholeValue());
-    ECPoint a1 = hibe.getPairing().getGroup2().decodePoint(((OCTET_STRING) s.getComponentAt(2)).getWholeValue());
+    byte[] a0 = ((OCTET_STRING) s.getComponentAt(1)).getWholeValue();
+    byte[] a1 = ((OCTET_STRING) s.getComponentAt(2)).getWholeValue();
 
     SEQUENCE s1 = (SEQUENCE) s.getComponentAt(3);
-    List<ECPoint> b = new ArrayList<>();
+    List<byte[]> b = new ArrayList<>(s1.countComponents());
     for (int i = 0; i < s1.countComponents(); i++) {
-      ECPoint e = hibe.getPairing().getGroup1().decodePoint(((OCTET_STRING) s1.getComponentAt(i)).getWholeValue());
-      b.add(e);
+      b.add(((OCTET_STRING) s1.getComponentAt(i)).getWholeValue());
+    }
+    return new EncodedDelKey(depth.intValue(), a0, a1, b);
+  }
+
+  static final class EncodedDelKey {
+    final int depth;
+    final byte[] a0;
+    final byte[] a1;
+    final List<byte[]> b;
+
+    EncodedDelKey(int depth, byte[] a0, byte[] a1, List<byte[]> b) {
+      this.depth = depth;
+      this.a0 = a0;
+      this.a1 = a1;
+      this.b = b;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a0 or a1 do not decode, b is decoded on access
+     */
+    DelegatedSecretKey decode(Hibe hibe) {
+      ECPoint a0Point = LazyPointList.decode(hibe.getPairing().getGroup1(), a0);
+      ECPoint a1Point = LazyPointList.decode(hibe.getPairing().getGroup2(), a1);
+      return new DelegatedSecretKey(a0Point, a1Point, new LazyPointList(hibe.getPairing().getGroup1(), b), depth);
     }
-    return new DelegatedSecretKey(a0, a1, b, depth.intValue());
   }
 
   void createHIBEPrivateKey() {
     try {
       private_key_algorithm = (AlgorithmID) HIBSProvider.HIBS_ALG.clone();
-      private_key_algorithm.setParameter(params_.toASN1Object());
+      private_key_algorithm.setParameter(params_.toKeyASN1Object());
 
-      SEQUENCE s = encodeDelKey(mKey);
+      SEQUENCE s = encodeDelKey(mKey, params_.isPointCompression());
 
       encodedDelPrivKey_ = new ASN1(s).toByteArray();
     } catch (Exception e) {
@@ -97,15 +128,15 @@ public class HIBSDelPrivKey extends PrivateKeyInfo {
     createPrivateKeyInfo();
   }
 
-  static SEQUENCE encodeDelKey(DelegatedSecretKey mKey) {
+  static SEQUENCE encodeDelKey(DelegatedSecretKey mKey, boolean compress) {
     SEQUENCE s = new SEQUENCE();
     s.addComponent(new INTEGER(mKey.depth));
-    s.addComponent(new OCTET_STRING(mKey.a0.encodePoint()));
-    s.addComponent(new OCTET_STRING(mKey.a1.encodePoint()));
+    s.addComponent(new OCTET_STRING(HIBSPointCodec.encode(mKey.a0, compress)));
+    s.addComponent(new OCTET_STRING(HIBSPointCodec.encode(mKey.a1, compress)));
 
     SEQUENCE s1 = new SEQUENCE();
     for (ECPoint i : mKey.b) {
-      s1.addComponent(new OCTET_STRING(i.encodePoint()));
+      s1.addComponent(new OCTET_STRING(HIBSPointCodec.encode(i, compress)));
     }
     s.addComponent(s1);
     return s;
@@ -125,12 +156,13 @@ public class HIBSDelPrivKey extends PrivateKeyInfo {
 
     StringBuilder builder = new StringBuilder();
 
+    DelegatedSecretKey key = getDelSecK();
     builder.append("Points: ");
-    builder.append(mKey.a0.toString());
+    builder.append(key.a0.toString());
     builder.append(", ");
-    builder.append(mKey.a1.toString());
+    builder.append(key.a1.toString());
     builder.append(", ");
-    for (ECPoint h : mKey.b) {
+    for (ECPoint h : key.b) {
       builder.append(h.toString());
     }
     builder.append("\nParameter: ");
@@ -148,8 +180,32 @@ public class HIBSDelPrivKey extends PrivateKeyInfo {
     return params_.getPP();
   }
 
+  /**
+   * Returns the key, decoding a0 and a1 on first use.
+   *
+   * @throws IllegalArgumentException if the encoded points are not on the curves of the parameters
+   */
   public DelegatedSecretKey getDelSecK() {
-    return mKey;
+    DelegatedSecretKey key = mKey;
+    if (key == null) {
+      synchronized (this) {
+        key = mKey;
+        if (key == null) {
+          key = mEncoded.decode(params_.getHibe());
+          mKey = key;
+          mEncoded = null;
+        }
+      }
+    }
+    return key;
+  }
+
+  /**
+   * @return the delegation depth, without decoding the key
+   */
+  public int getDepth() {
+    EncodedDelKey encoded = mEncoded;
+    return (encoded != null) ? encoded.depth : getDelSecK().depth;
   }
 
   public HIBSKeyPairParamSpec getParams() {
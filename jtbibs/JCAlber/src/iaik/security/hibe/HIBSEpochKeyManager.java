@@ -0,0 +1,276 @@
+package iaik.security.hibe;
+
+import Entities.IdentityPath;
+import org.apache.log4j.Logger;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keys delegated to the current epoch below a long-term key, e.g. the key of a domain.
+ * <p>
+ * The key of the next epoch is delegated in the background right after the current one is
+ * installed, and swapped in at the epoch boundary. Signers read the current key with
+ * {@link #getCurrent}, which never waits for a delegation unless the background thread fell
+ * behind by a whole epoch. The nonce pool of the next key is filled before the rollover as well,
+ * see {@link HIBSNoncePool}, and the pool of the replaced key is evicted at the rollover.
+ */
+public class HIBSEpochKeyManager implements AutoCloseable {
+  private static Logger logger = Logger.getLogger(HIBSEpochKeyManager.class);
+
+  /**
+   * Delay before a failed delegation at a rollover is retried.
+   */
+  public static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+  /**
+   * Key delegated to one epoch, together with the identities it was delegated to.
+   */
+  public static final class EpochKey {
+    private final byte[] mEpoch;
+    private final Instant mStart;
+    private final Instant mEnd;
+    private final HIBSDelPrivKey mKey;
+    private final List<byte[]> mIDs;
+    private final IdentityPath mPath;
+
+    EpochKey(byte[] epoch, Instant start, Instant end, HIBSDelPrivKey key, List<byte[]> ids) {
+      mEpoch = epoch;
+      mStart = start;
+      mEnd = end;
+      mKey = key;
+      mIDs = ids;
+      mPath = IdentityPath.of(key.getParams().getSharedPP(), ids);
+    }
+
+    /**
+     * @return the epoch identity, see {@link HIBSUtils#getEpoch(HIBSUtils.EpochGranularity, Instant)}
+     */
+    public byte[] getEpoch() {
+      return mEpoch.clone();
+    }
+
+    public Instant getStart() {
+      return mStart;
+    }
+
+    public Instant getEnd() {
+      return mEnd;
+    }
+
+    public HIBSDelPrivKey getKey() {
+      return mKey;
+    }
+
+    /**
+     * @return the identities of the key, the parent identities followed by the epoch; must not be modified
+     */
+    public List<byte[]> getIDs() {
+      return mIDs;
+    }
+
+    /**
+     * @return the identities of the key with their hashes computed
+     */
+    public IdentityPath getPath() {
+      return mPath;
+    }
+
+    /**
+     * @return a new parameter spec for signing with the key
+     */
+    public HIBSAlgorithmParameterSpec newParameterSpec() {
+      return new HIBSAlgorithmParameterSpec().addDelegateIDs(mIDs.toArray(new byte[0][]));
+    }
+
+    public boolean covers(Instant time) {
+      return !time.isBefore(mStart) && time.isBefore(mEnd);
+    }
+  }
+
+  private final PrivateKey mParent;
+  private final List<byte[]> mParentIDs;
+  private final HIBSUtils.EpochGranularity mGranularity;
+  private final Clock mClock;
+  private final ScheduledExecutorService mExecutor;
+  private final boolean mOwnExecutor;
+
+  private final AtomicReference<EpochKey> mCurrent = new AtomicReference<>();
+  private final AtomicReference<EpochKey> mNext = new AtomicReference<>();
+
+  /**
+   * Creates a manager with its own scheduler thread.
+   *
+   * @param parent    the key epoch keys are delegated from, a {@link HIBSPrivateKey} or {@link HIBSDelPrivKey}
+   * @param parentIDs the identities <code>parent</code> was delegated to, e.g. the domain
+   */
+  public HIBSEpochKeyManager(PrivateKey parent, List<byte[]> parentIDs, HIBSUtils.EpochGranularity granularity)
+      throws GeneralSecurityException {
+    this(parent, parentIDs, granularity, Clock.systemUTC(), Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "HIBS epoch keys");
+      t.setDaemon(true);
+      return t;
+    }), true);
+  }
+
+  /**
+   * Creates a manager scheduled on <code>executor</code>, which is not shut down by {@link #close}.
+   */
+  public HIBSEpochKeyManager(PrivateKey parent, List<byte[]> parentIDs, HIBSUtils.EpochGranularity granularity,
+      Clock clock, ScheduledExecutorService executor) throws GeneralSecurityException {
+    this(parent, parentIDs, granularity, clock, executor, false);
+  }
+
+  private HIBSEpochKeyManager(PrivateKey parent, List<byte[]> parentIDs, HIBSUtils.EpochGranularity granularity,
+      Clock clock, ScheduledExecutorService executor, boolean ownExecutor) throws GeneralSecurityException {
+    if (!(parent instanceof HIBSPrivateKey) && !(parent instanceof HIBSDelPrivKey))
+      throw new HIBSInvalidKeyException("Epoch keys are delegated from HIBE private keys only");
+    List<byte[]> ids = new ArrayList<>(parentIDs.size());
+    for (byte[] id : parentIDs) {
+      ids.add(id.clone());
+    }
+    mParent = parent;
+    mParentIDs = Collections.unmodifiableList(ids);
+    mGranularity = granularity;
+    mClock = clock;
+    mExecutor = executor;
+    mOwnExecutor = ownExecutor;
+
+    // the first key is delegated by the caller, all further ones in the background
+    EpochKey current = delegate(mClock.instant());
+    mCurrent.set(current);
+    prepareNext(current);
+    scheduleRollover(current.getEnd());
+  }
+
+  /**
+   * Returns the key of the current epoch. If the rollover is overdue the prepared next key is
+   * installed, only if there is none the key is delegated by the caller.
+   */
+  public EpochKey getCurrent() throws GeneralSecurityException {
+    EpochKey current = mCurrent.get();
+    Instant now = mClock.instant();
+    if (current.covers(now))
+      return current;
+
+    EpochKey next = mNext.get();
+    if (next == null || !next.covers(now))
+      next = delegate(now);
+    install(current, next);
+    return mCurrent.get();
+  }
+
+  /**
+   * @return the identities the parent key was delegated to, must not be modified
+   */
+  public List<byte[]> getParentIDs() {
+    return mParentIDs;
+  }
+
+  /**
+   * @return <code>true</code> if the parent key was delegated to exactly <code>ids</code>
+   */
+  public boolean isDelegatedTo(byte[]... ids) {
+    if (ids.length != mParentIDs.size())
+      return false;
+    for (int i = 0; i < ids.length; i++) {
+      if (!Arrays.equals(ids[i], mParentIDs.get(i)))
+        return false;
+    }
+    return true;
+  }
+
+  public HIBSUtils.EpochGranularity getGranularity() {
+    return mGranularity;
+  }
+
+  @Override
+  public void close() {
+    if (mOwnExecutor)
+      mExecutor.shutdownNow();
+  }
+
+  private void rollover() {
+    try {
+      Instant now = mClock.instant();
+      EpochKey current = mCurrent.get();
+      if (!current.covers(now)) {
+        // like getCurrent, the next key is only taken once it is installed, a handshake may have
+        // rolled over already and the following key may be prepared
+        EpochKey next = mNext.get();
+        if (next == null || !next.covers(now))
+          next = delegate(now);
+        if (install(current, next)) {
+          if (logger.isDebugEnabled())
+            logger.debug("rolled over to epoch " + new String(next.mEpoch));
+        }
+      }
+      scheduleRollover(mCurrent.get().getEnd());
+    } catch (GeneralSecurityException | RuntimeException e) {
+      logger.error("epoch rollover failed, retrying", e);
+      schedule(this::rollover, RETRY_DELAY);
+    }
+  }
+
+  /**
+   * Replaces <code>current</code> with <code>next</code> unless another thread did already, then
+   * prepares the following key and drops the nonces of the replaced one.
+   */
+  private boolean install(EpochKey current, EpochKey next) {
+    if (!mCurrent.compareAndSet(current, next))
+      return false;
+    mNext.compareAndSet(next, null);
+    prepareNext(next);
+    HIBSNoncePool.evict(current.getKey(), current.getIDs());
+    return true;
+  }
+
+  private void prepareNext(EpochKey current) {
+    mExecutor.execute(() -> {
+      try {
+        EpochKey next = delegate(current.getEnd());
+        mNext.set(next);
+        HIBSNoncePool.forKey(next.getKey(), next.getIDs());
+      } catch (GeneralSecurityException | RuntimeException e) {
+        // delegated at the rollover instead
+        logger.error("delegation of the next epoch key failed", e);
+      }
+    });
+  }
+
+  private void scheduleRollover(Instant end) {
+    schedule(this::rollover, Duration.between(mClock.instant(), end));
+  }
+
+  private void schedule(Runnable task, Duration delay) {
+    if (!mExecutor.isShutdown())
+      mExecutor.schedule(task, Math.max(0, delay.toMillis()) + 1, TimeUnit.MILLISECONDS);
+  }
+
+  private EpochKey delegate(Instant time) throws GeneralSecurityException {
+    byte[] epoch = HIBSUtils.getEpoch(mGranularity, time);
+    Signature sig = Signature.getInstance("HIBE");
+    if (!mParentIDs.isEmpty())
+      sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(mParentIDs.toArray(new byte[0][])));
+    sig.initSign(mParent);
+    sig.update(epoch);
+    HIBSDelPrivKey key = new HIBSDelPrivKey(sig.sign());
+
+    List<byte[]> ids = new ArrayList<>(mParentIDs);
+    ids.add(epoch);
+    return new EpochKey(epoch, HIBSUtils.getEpochStart(mGranularity, time),
+        HIBSUtils.getNextEpochStart(mGranularity, time), key, Collections.unmodifiableList(ids));
+  }
+}
@@ -12,11 +12,11 @@ public class HIBSKeyPairGenerator extends KeyPairGeneratorSpi {
   private static Logger logger = Logger.getLogger(HIBSKeyPairGenerator.class);
   private Hibe mHibe;
   private PublicParams mPP;
+  private HIBSKeyPairParamSpec mParams;
 
 
   public HIBSKeyPairGenerator() {
     logger.info("KeyPairGenerator Hibe selected");
-    mHibe = new Hibe();
   }
 
   @Deprecated
@@ -32,7 +32,9 @@ public class HIBSKeyPairGenerator extends KeyPairGeneratorSpi {
     if (!(params instanceof HIBSKeyPairParamSpec))
       throw new HIBSInvalidAlgorithmParameterException("Parameters not of type HIBEsetupParameterSpec");
 
-    mPP = ((HIBSKeyPairParamSpec) params).getPP();
+    mParams = (HIBSKeyPairParamSpec) params;
+    mHibe = mParams.getHibe();
+    mPP = mParams.getPP();
   }
 
   @Override
@@ -44,9 +46,8 @@ public class HIBSKeyPairGenerator extends KeyPairGeneratorSpi {
     logger.info("KeyPairGenerator keypair generated");
 
     MasterKeyPair keyPair = mHibe.keyGen(mPP);
-    HIBSKeyPairParamSpec pp_spec = HIBSKeyPairParamSpec.generateToSpec(mPP);
-    return new KeyPair(new HIBSPublicKey(pp_spec, keyPair.pubKey),
-        new HIBSPrivateKey(pp_spec, keyPair.secKey));
+    return new KeyPair(new HIBSPublicKey(mParams, keyPair.pubKey),
+        new HIBSPrivateKey(mParams, keyPair.secKey));
   }
 
 }
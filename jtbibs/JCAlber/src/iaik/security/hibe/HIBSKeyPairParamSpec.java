@@ -1,5 +1,8 @@
 package iaik.security.hibe;
 
+import Entities.IdentityHash;
+import Entities.LruCache;
+import Entities.PrecomputedBases;
 import Entities.PublicParams;
 import Entities.SecurityParams;
 import HIBE.Hibe;
@@ -7,10 +10,13 @@ import iaik.asn1.*;
 import iaik.security.ec.errorhandling.DecodingException;
 import iaik.security.ec.math.curve.ECPoint;
 import iaik.security.ec.math.curve.EllipticCurve;
+import iaik.security.md.SHA256;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
+import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +27,33 @@ public class HIBSKeyPairParamSpec implements AlgorithmParameterSpec {
 
   private static final ASN1Object HIBE_PARAMETER_VERSION = new INTEGER(333);
 
+  /**
+   * Version of the encoding holding only curve, seed and height, see {@link Hibe#setUp(int, byte[])}.
+   */
+  private static final ASN1Object HIBE_SEEDED_PARAMETER_VERSION = new INTEGER(334);
+
+  /**
+   * Version of the encoding holding only the digest of a registered parameter set, see {@link HIBSParameterRegistry}.
+   */
+  private static final ASN1Object HIBE_PARAMETER_REFERENCE_VERSION = new INTEGER(335);
+
+  /**
+   * Length of the seeds drawn by {@link #create(int, SecurityParams)}.
+   */
+  public static final int SEED_LENGTH = 32;
+
+  /**
+   * Highest height accepted in seeded encodings, bounds the work of decoding.
+   */
+  public static final int MAX_SEEDED_HEIGHT = 64;
+
+  /**
+   * Number of decoded parameter sets kept, keyed by the digest of their encoding.
+   */
+  public static final int DECODE_CACHE_SIZE = 32;
+
+  private static final LruCache<ByteBuffer, HIBSKeyPairParamSpec> sDecoded = new LruCache<>(DECODE_CACHE_SIZE);
+
   private final BigInteger p; // prime order
 
   private final ECPoint g; // from G1
@@ -28,81 +61,269 @@ public class HIBSKeyPairParamSpec implements AlgorithmParameterSpec {
   private final ECPoint g2; // from G1
   private final ECPoint g3; // from G1
   private final List<ECPoint> h; // from G1
+  private final HIBScurve mCurve;
   private final Hibe mHibe;
+  private final IdentityHash.Version mHashVersion;
+  private final byte[] mSeed; // null for explicit parameters
+  private final PrecomputedBases mBases; // fixed-base tables shared by all getPP() copies
+  private final boolean mPointCompression;
+  private final boolean mParameterReferences;
+  private volatile PublicParams mSharedPP;
+  private volatile byte[] mDigest;
 
+  /**
+   * Sets up fresh parameters on the curve given in <code>securities</code>. Without a curve
+   * the default curve {@link Hibe#sCurve} is used. Identities are hashed with
+   * {@link IdentityHash.Version#EXPAND_XMD}. The generators are derived from a random seed,
+   * see {@link #create(int, SecurityParams, byte[])}.
+   */
   public static HIBSKeyPairParamSpec create(int max_signings, SecurityParams securities) {
-    if (securities != null && securities.getCurve() != null) {
-      if (securities.getCurve() == null) { //TODO resolve when curve in encoding (two ifs above)
-//        Hibe.sCurve = Hibe.Curve.BN_P256;
-      } else if (securities.getCurve().equals(HIBScurve.BN_P461)) {
-        Hibe.sCurve = Hibe.Curve.BN_P461;
-      } else if (securities.getCurve().equals(HIBScurve.BN_P638)) {
-        Hibe.sCurve = Hibe.Curve.BN_P638;
-      } else if (securities.getCurve().equals(HIBScurve.ISO_P512)) {
-        Hibe.sCurve = Hibe.Curve.ISO_P512;
-      }
-    }
+    byte[] seed = new byte[SEED_LENGTH];
+    new SecureRandom().nextBytes(seed);
+    return create(max_signings, securities, seed);
+  }
+
+  /**
+   * Derives the parameters for <code>seed</code>, the same seed, curve and height always give
+   * the same parameters. Only those are encoded, the generators are derived again when decoding.
+   */
+  public static HIBSKeyPairParamSpec create(int max_signings, SecurityParams securities, byte[] seed) {
+    HIBScurve curve = curveOf(securities);
+    Hibe hibe = Hibe.getInstance(curve.toEngineCurve());
+    PublicParams pp = hibe.setUp(max_signings, seed);
+    return new HIBSKeyPairParamSpec(curve, pp.p, pp.g, pp.g_head, pp.g2, pp.g3, pp.h, pp.bases,
+        IdentityHash.Version.EXPAND_XMD, seed.clone(), false, false);
+  }
+
+  /**
+   * Sets up parameters with randomly drawn generators, encoded explicitly.
+   */
+  public static HIBSKeyPairParamSpec createExplicit(int max_signings, SecurityParams securities) {
+    HIBScurve curve = curveOf(securities);
 
     // TODO error handling? make InvalidAlgorithmParameterException
-    Hibe hibe = new Hibe();
+    Hibe hibe = Hibe.getInstance(curve.toEngineCurve());
     PublicParams pp = hibe.setUp(max_signings, securities);
-    return generateToSpec(pp);
+    return new HIBSKeyPairParamSpec(curve, pp.p, pp.g, pp.g_head, pp.g2, pp.g3, pp.h, pp.bases,
+        IdentityHash.Version.EXPAND_XMD, null, false, false);
+  }
+
+  private static HIBScurve curveOf(SecurityParams securities) {
+    if (securities != null && securities.getCurve() != null) {
+      return securities.getCurve();
+    }
+    return HIBScurve.fromEngineCurve(Hibe.sCurve);
   }
 
+  /**
+   * Wraps the given parameters, the curve is looked up from the group of the parameters.
+   */
   public static HIBSKeyPairParamSpec generateToSpec(PublicParams pp) {
-    return new HIBSKeyPairParamSpec(pp.p, pp.g, pp.g_head, pp.g2, pp.g3, pp.h);
+    for (HIBScurve c : HIBScurve.values()) {
+      if (Hibe.getInstance(c.toEngineCurve()).getPairing().getGroup1().equals(pp.G1)) {
+        return generateToSpec(pp, c);
+      }
+    }
+    throw new IllegalArgumentException("Public parameters are not on a supported HIBE curve!");
   }
 
-  private HIBSKeyPairParamSpec(BigInteger p, ECPoint g, ECPoint g_head, ECPoint g2, ECPoint g3, List<ECPoint> h) {
+  public static HIBSKeyPairParamSpec generateToSpec(PublicParams pp, HIBScurve curve) {
+    return new HIBSKeyPairParamSpec(curve, pp.p, pp.g, pp.g_head, pp.g2, pp.g3, pp.h, pp.bases, pp.getHashVersion(),
+        null, false, false);
+  }
+
+  private HIBSKeyPairParamSpec(HIBScurve curve, BigInteger p, ECPoint g, ECPoint g_head, ECPoint g2, ECPoint g3,
+                               List<ECPoint> h, PrecomputedBases bases, IdentityHash.Version hashVersion,
+                               byte[] seed, boolean pointCompression, boolean parameterReferences) {
     this.p = p;
     this.g = g;
     this.g_head = g_head;
     this.g2 = g2;
     this.g3 = g3;
     this.h = h;
-    mHibe = new Hibe();
+    mCurve = curve;
+    mHashVersion = hashVersion;
+    mSeed = seed;
+    mHibe = Hibe.getInstance(curve.toEngineCurve());
+    mBases = (bases != null) ? bases : new PrecomputedBases(p, g_head, g2, g3, h);
+    mPointCompression = pointCompression;
+    mParameterReferences = parameterReferences;
+  }
+
+  /**
+   * Returns the same parameters encoding the points of the parameters and of the keys and
+   * signatures made with them compressed, or uncompressed. Decoding accepts both forms in any
+   * case, decoded parameters encode uncompressed. The digest does not depend on the encoding.
+   */
+  public HIBSKeyPairParamSpec withPointCompression(boolean compression) {
+    return withEncoding(compression, mParameterReferences);
+  }
+
+  public boolean isPointCompression() {
+    return mPointCompression;
+  }
+
+  /**
+   * Returns the same parameters, which keys and signatures made with them reference by their
+   * digest instead of carrying them, see {@link HIBSParameterRegistry}. The parameters are not
+   * registered by encoding, every party decoding such keys or signatures, including this one,
+   * has to register them with {@link HIBSParameterRegistry#register} first.
+   */
+  public HIBSKeyPairParamSpec withParameterReferences(boolean references) {
+    return withEncoding(mPointCompression, references);
+  }
+
+  public boolean isParameterReferences() {
+    return mParameterReferences;
+  }
+
+  private HIBSKeyPairParamSpec withEncoding(boolean compression, boolean references) {
+    if (compression == mPointCompression && references == mParameterReferences)
+      return this;
+    HIBSKeyPairParamSpec spec = new HIBSKeyPairParamSpec(mCurve, p, g, g_head, g2, g3, h, mBases, mHashVersion,
+        mSeed, compression, references);
+    spec.mSharedPP = getSharedPP();
+    return spec;
   }
 
   public ASN1Object toASN1Object() {
+    return toASN1Object(false);
+  }
+
+  /**
+   * Encoding in keys and signatures: a reference to the parameters if enabled with
+   * {@link #withParameterReferences}, the parameters themselves otherwise.
+   */
+  ASN1Object toKeyASN1Object() {
+    if (!mParameterReferences)
+      return toASN1Object();
+    final SEQUENCE s = new SEQUENCE();
+    s.addComponent(HIBE_PARAMETER_REFERENCE_VERSION);
+    s.addComponent(new OCTET_STRING(getDigest()));
+    return s;
+  }
+
+  /**
+   * Returns the SHA-256 digest of the canonical encoding, the parameters encoded with uncompressed points.
+   */
+  public byte[] getDigest() {
+    byte[] digest = mDigest;
+    if (digest == null) {
+      digest = new SHA256().digest(DerCoder.encode(toASN1Object(true)));
+      mDigest = digest;
+    }
+    return digest.clone();
+  }
+
+  /**
+   * @param canonical encode points uncompressed, regardless of {@link #isPointCompression}
+   */
+  private ASN1Object toASN1Object(boolean canonical) {
+    if (mSeed != null) {
+      final SEQUENCE s = new SEQUENCE();
+      s.addComponent(HIBE_SEEDED_PARAMETER_VERSION);
+      s.addComponent(new OCTET_STRING(mSeed));
+      s.addComponent(new INTEGER(h.size()));
+      s.addComponent(new INTEGER(mCurve.getId()));
+      s.addComponent(new INTEGER(mHashVersion.getId()));
+      return s;
+    }
+
     // explicit encoding
     final SEQUENCE s = new SEQUENCE();
     s.addComponent(HIBE_PARAMETER_VERSION);
     s.addComponent(new INTEGER(p));
-    s.addComponent(new OCTET_STRING(g.encodePoint()));
-    s.addComponent(new OCTET_STRING(g_head.encodePoint()));
-    s.addComponent(new OCTET_STRING(g2.encodePoint()));
-    s.addComponent(new OCTET_STRING(g3.encodePoint()));
+    s.addComponent(new OCTET_STRING(encode(g, canonical)));
+    s.addComponent(new OCTET_STRING(encode(g_head, canonical)));
+    s.addComponent(new OCTET_STRING(encode(g2, canonical)));
+    s.addComponent(new OCTET_STRING(encode(g3, canonical)));
 
     final SEQUENCE hs = new SEQUENCE();
     for (ECPoint i : h) {
-      hs.addComponent(new OCTET_STRING(i.encodePoint()));
+      hs.addComponent(new OCTET_STRING(encode(i, canonical)));
     }
     s.addComponent(hs);
+    s.addComponent(new INTEGER(mCurve.getId()));
+    // parameters hashing with rejection sampling keep their encoding from before the hash was versioned
+    if (mHashVersion != IdentityHash.Version.REJECTION_SAMPLING)
+      s.addComponent(new INTEGER(mHashVersion.getId()));
 
     return s;
   }
 
+  private byte[] encode(ECPoint point, boolean canonical) {
+    return HIBSPointCodec.encode(point, !canonical && mPointCompression);
+  }
+
+  /**
+   * Decodes parameters, each encoding is only decoded once while it is in the cache of recently
+   * decoded parameters, repeated decodes return the same instance. References are looked up in
+   * the {@link HIBSParameterRegistry}.
+   */
   public static HIBSKeyPairParamSpec decode(final ASN1Object param) throws InvalidKeyException {
     if (param == null) {
       throw new NullPointerException("HIBE Parameters are null!");
     }
 
+    try {
+      if (HIBE_PARAMETER_REFERENCE_VERSION.getValue().equals(param.getComponentAt(0).getValue())) {
+        byte[] digest = ((OCTET_STRING) param.getComponentAt(1)).getWholeValue();
+        HIBSKeyPairParamSpec spec = HIBSParameterRegistry.lookup(digest);
+        if (spec == null) {
+          throw new HIBSInvalidKeyException("Referenced HIBE key params are not registered!");
+        }
+        return spec;
+      }
+    } catch (IOException e) {
+      throw new HIBSInvalidKeyException("Somethings went wrong during IO while reading the HIBE key params!");
+    } catch (CodingException e) {
+      throw new HIBSInvalidKeyException("Coding/decoding error while reading the HIBE key params!");
+    }
+
+    ByteBuffer key = ByteBuffer.wrap(new SHA256().digest(DerCoder.encode(param)));
+    HIBSKeyPairParamSpec spec = sDecoded.get(key);
+    if (spec == null) {
+      spec = decodeUncached(param);
+      sDecoded.put(key, spec);
+    }
+    return spec;
+  }
+
+  private static HIBSKeyPairParamSpec decodeUncached(final ASN1Object param) throws InvalidKeyException {
 
     try {
+      final BigInteger parameterVersion = (BigInteger) param.getComponentAt(0).getValue();
+      if (parameterVersion.equals(HIBE_SEEDED_PARAMETER_VERSION.getValue())) {
+        return decodeSeeded(param);
+      }
+
+      // parameters without the trailing curve component are from before the curve was encoded,
+      // without the hash version component they hash with rejection sampling
       final int numberOfComponents = param.countComponents();
-      if (numberOfComponents != 7) {
+      if (numberOfComponents < 7 || numberOfComponents > 9) {
         throw new IllegalArgumentException("Invalid HIBE Domain Parameter Number!");
       }
 
-      final BigInteger parameterVersion = (BigInteger) param.getComponentAt(0).getValue();
       if (!parameterVersion.equals(HIBE_PARAMETER_VERSION.getValue())) {
         throw new IllegalArgumentException("No HIBE Domain Parameter: wrong parameter version!");
       }
 
-      Hibe hibe = new Hibe();
+      HIBScurve curve = HIBScurve.fromEngineCurve(Hibe.sCurve);
+      if (numberOfComponents >= 8) {
+        curve = HIBScurve.fromId(((BigInteger) param.getComponentAt(7).getValue()).intValue());
+      }
+      IdentityHash.Version hashVersion = IdentityHash.Version.REJECTION_SAMPLING;
+      if (numberOfComponents == 9) {
+        hashVersion = IdentityHash.Version.fromId(((BigInteger) param.getComponentAt(8).getValue()).intValue());
+      }
+
+      Hibe hibe = Hibe.getInstance(curve.toEngineCurve());
       EllipticCurve G1 = hibe.getPairing().getGroup1();
       EllipticCurve G2 = hibe.getPairing().getGroup2();
       BigInteger p = (BigInteger) param.getComponentAt(1).getValue();
+      if (!p.equals(G1.getOrder())) {
+        throw new HIBSInvalidKeyException("HIBE key params do not match the curve " + curve + "!");
+      }
       ECPoint g = G1.decodePoint(((OCTET_STRING) param.getComponentAt(2)).getWholeValue());
       ECPoint g_head = G2.decodePoint(((OCTET_STRING) param.getComponentAt(3)).getWholeValue());
       ECPoint g2 = G1.decodePoint(((OCTET_STRING) param.getComponentAt(4)).getWholeValue());
@@ -116,7 +337,7 @@ public class HIBSKeyPairParamSpec implements AlgorithmParameterSpec {
         h.add(e);
       }
 
-      return new HIBSKeyPairParamSpec(p, g, g_head, g2, g3, h);
+      return new HIBSKeyPairParamSpec(curve, p, g, g_head, g2, g3, h, null, hashVersion, null, false, false);
     } catch (IOException e) {
       throw new HIBSInvalidKeyException("Somethings went wrong during IO while reading the HIBE key params!");
     } catch (CodingException | DecodingException e) {
@@ -124,6 +345,28 @@ public class HIBSKeyPairParamSpec implements AlgorithmParameterSpec {
     }
   }
 
+  /**
+   * Derives the parameters of a seeded encoding: version, seed, height, curve, hash version.
+   */
+  private static HIBSKeyPairParamSpec decodeSeeded(final ASN1Object param) throws CodingException, IOException,
+      HIBSInvalidKeyException {
+    if (param.countComponents() != 5) {
+      throw new IllegalArgumentException("Invalid HIBE Domain Parameter Number!");
+    }
+    byte[] seed = ((OCTET_STRING) param.getComponentAt(1)).getWholeValue();
+    int height = ((BigInteger) param.getComponentAt(2).getValue()).intValue();
+    if (height < 1 || height > MAX_SEEDED_HEIGHT) {
+      throw new HIBSInvalidKeyException("Invalid HIBE height " + height + "!");
+    }
+    HIBScurve curve = HIBScurve.fromId(((BigInteger) param.getComponentAt(3).getValue()).intValue());
+    IdentityHash.Version hashVersion = IdentityHash.Version.fromId(
+        ((BigInteger) param.getComponentAt(4).getValue()).intValue());
+
+    PublicParams pp = Hibe.getInstance(curve.toEngineCurve()).setUp(height, seed);
+    return new HIBSKeyPairParamSpec(curve, pp.p, pp.g, pp.g_head, pp.g2, pp.g3, pp.h, pp.bases, hashVersion, seed,
+        false, false);
+  }
+
   public EllipticCurve getG1() {
     return mHibe.getPairing().getGroup1();
   }
@@ -132,8 +375,40 @@ public class HIBSKeyPairParamSpec implements AlgorithmParameterSpec {
     return mHibe.getPairing().getGroup2();
   }
 
+  public HIBScurve getCurve() {
+    return mCurve;
+  }
+
+  public IdentityHash.Version getHashVersion() {
+    return mHashVersion;
+  }
+
+  /**
+   * @return the seed the generators were derived from, <code>null</code> for explicit parameters
+   */
+  public byte[] getSeed() {
+    return (mSeed == null) ? null : mSeed.clone();
+  }
+
+  public Hibe getHibe() {
+    return mHibe;
+  }
+
+  /**
+   * Returns parameters shared by all users of this spec, see {@link PublicParams#shared()}.
+   * Use {@link #getPP()} for the methods of the engine that collect identities in <code>pp.ID</code>.
+   */
+  public PublicParams getSharedPP() {
+    PublicParams pp = mSharedPP;
+    if (pp == null) {
+      pp = getPP().shared();
+      mSharedPP = pp;
+    }
+    return pp;
+  }
+
   public PublicParams getPP() {
     return new PublicParams(p, mHibe.getPairing().getGroup1(), mHibe.getPairing().getGroup2(),
-        mHibe.getPairing().getTargetGroup(), g, g_head, g2, g3, h, h.size());
+        mHibe.getPairing().getTargetGroup(), g, g_head, g2, g3, h, h.size(), mBases, mHashVersion);
   }
 }
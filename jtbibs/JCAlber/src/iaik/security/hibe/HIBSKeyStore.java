@@ -0,0 +1,643 @@
+package iaik.security.hibe;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.PrivateKey;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Key store of HIBE private keys in a memory-mapped file, for hosts holding a delegated key per
+ * domain and epoch for many domains.
+ * <p>
+ * The file starts with a header and an open addressing hash table of aliases, followed by fixed-size
+ * records. Opening a store maps the file without reading the records, a lookup probes the table
+ * and compares the alias of the referenced record, and keys are only decoded when they are
+ * requested. New entries are written to the mapped file directly. A key is always written to a
+ * new record which is referenced once complete, also when it replaces the key of an existing
+ * alias, so a crash of the process never loses or tears an entry; it may leak the record being
+ * written. Writes are not forced to the disk, after a crash of the operating system or a power
+ * loss the entries written since the last {@link KeyStore#store} may be lost or torn.
+ * <p>
+ * Records of deleted or replaced entries are kept in a free list and reused, the file only grows
+ * when the list is empty. The number of entries is limited to 3/4 of the capacity given when the
+ * store is created, regardless of how many entries were deleted before.
+ * <p>
+ * Stores are opened with a {@link FileParameter} or read only from a {@link FileInputStream}.
+ * There is no in-memory store, <code>load(null, null)</code> throws an {@link IOException}.
+ * Loading a store again closes the file it was loaded from before.
+ * Only {@link HIBSPrivateKey}s and {@link HIBSDelPrivKey}s are stored, without certificates. As
+ * {@link KeyStore#setKeyEntry} requires a certificate chain for private keys, keys without one are
+ * stored with {@link KeyStore#setEntry} and a {@link KeyEntry}.
+ * The keys are stored unencrypted, passwords are ignored and the file has to be protected by the
+ * file system. A store must only be written by one process at a time.
+ */
+public class HIBSKeyStore extends KeyStoreSpi {
+  private static Logger logger = Logger.getLogger(HIBSKeyStore.class);
+
+  public static final int DEFAULT_CAPACITY = 1 << 20;
+  public static final int DEFAULT_RECORD_SIZE = 1024;
+
+  private static final long MAGIC = 0x48494253204b5331L; // "HIBS KS1"
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 64;
+  private static final int SLOT_SIZE = Long.BYTES;
+  private static final int MAX_CAPACITY = 1 << 27;
+  private static final int SEGMENT_SIZE = 1 << 26;
+
+  // header offsets
+  private static final int H_MAGIC = 0;
+  private static final int H_VERSION = 8;
+  private static final int H_RECORD_SIZE = 12;
+  private static final int H_CAPACITY = 16;
+  private static final int H_RECORDS = 24;
+  private static final int H_ENTRIES = 32;
+  private static final int H_FREE = 40; // first free record + 1, 0 if there is none
+
+  // record layout
+  private static final int R_STATE = 0;
+  private static final int R_TYPE = 1;
+  private static final int R_ALIAS_LENGTH = 2;
+  private static final int R_KEY_LENGTH = 4;
+  private static final int R_DATE = 8; // next free record + 1 in free records
+  private static final int R_DATA = 16;
+
+  private static final byte STATE_DELETED = 0;
+  private static final byte STATE_LIVE = 1;
+  private static final byte TYPE_PRIVATE_KEY = 1;
+  private static final byte TYPE_DEL_PRIVATE_KEY = 2;
+
+  private static final long SLOT_EMPTY = 0;
+  private static final long INDEX_MASK = 0xffffffffL;
+
+  /**
+   * File and layout of a store, passed to {@link KeyStore#load(KeyStore.LoadStoreParameter)}.
+   * The capacity and record size are only used when the file is created.
+   */
+  public static class FileParameter implements KeyStore.LoadStoreParameter {
+    private final File mFile;
+    private final int mCapacity;
+    private final int mRecordSize;
+
+    public FileParameter(File file) {
+      this(file, DEFAULT_CAPACITY, DEFAULT_RECORD_SIZE);
+    }
+
+    /**
+     * @param capacity   number of hash table slots, a power of two; the store holds up to 3/4 as many entries
+     * @param recordSize bytes per entry, has to hold the alias and the PKCS#8 encoding of the key
+     */
+    public FileParameter(File file, int capacity, int recordSize) {
+      if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY)
+        throw new IllegalArgumentException("Capacity must be a power of two up to " + MAX_CAPACITY);
+      if (recordSize <= R_DATA || recordSize > SEGMENT_SIZE)
+        throw new IllegalArgumentException("Invalid record size " + recordSize);
+      mFile = file;
+      mCapacity = capacity;
+      mRecordSize = recordSize;
+    }
+
+    public File getFile() {
+      return mFile;
+    }
+
+    @Override
+    public KeyStore.ProtectionParameter getProtectionParameter() {
+      return null;
+    }
+  }
+
+  /**
+   * Entry of a HIBE private key without certificates.
+   */
+  public static class KeyEntry implements KeyStore.Entry {
+    private final PrivateKey mKey;
+
+    public KeyEntry(PrivateKey key) {
+      if (key == null)
+        throw new NullPointerException("key is null");
+      mKey = key;
+    }
+
+    public PrivateKey getKey() {
+      return mKey;
+    }
+  }
+
+  private FileChannel mChannel;
+  private boolean mOwnChannel; // false for the channel of a stream passed by the caller
+  private boolean mReadOnly;
+  private MappedByteBuffer mIndex; // header and hash table
+  private volatile MappedByteBuffer[] mSegments = new MappedByteBuffer[0];
+  private final ReadWriteLock mLock = new ReentrantReadWriteLock(); // readers and writers of this instance
+  private int mCapacity;
+  private int mRecordSize;
+  private int mRecordsPerSegment;
+  private long mRecordsOffset;
+
+  @Override
+  public void engineLoad(KeyStore.LoadStoreParameter param) throws IOException {
+    if (param == null)
+      throw new IOException("HIBE key stores have no in-memory mode, load a HIBSKeyStore.FileParameter");
+    if (!(param instanceof FileParameter))
+      throw new IllegalArgumentException("HIBE key stores are loaded with a HIBSKeyStore.FileParameter");
+    FileParameter fileParam = (FileParameter) param;
+    RandomAccessFile file = new RandomAccessFile(fileParam.mFile, "rw");
+    try {
+      open(file.getChannel(), false, fileParam.mCapacity, fileParam.mRecordSize);
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens an existing store read only, <code>stream</code> has to be a {@link FileInputStream}.
+   * The whole file is mapped, so the stream may be closed afterwards.
+   *
+   * @throws IOException if <code>stream</code> is <code>null</code>, there is no in-memory mode
+   */
+  @Override
+  public void engineLoad(InputStream stream, char[] password) throws IOException {
+    if (stream == null)
+      throw new IOException("HIBE key stores have no in-memory mode, load a HIBSKeyStore.FileParameter");
+    if (!(stream instanceof FileInputStream))
+      throw new IOException("HIBE key stores are mapped from a file, use a HIBSKeyStore.FileParameter");
+    open(((FileInputStream) stream).getChannel(), true, DEFAULT_CAPACITY, DEFAULT_RECORD_SIZE);
+  }
+
+  private synchronized void open(FileChannel channel, boolean readOnly, int capacity, int recordSize)
+      throws IOException {
+    mLock.writeLock().lock();
+    try {
+      close();
+      openLocked(channel, readOnly, capacity, recordSize);
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Closes the file of a previously loaded store and drops its mappings, which are unmapped once
+   * they are collected.
+   */
+  private void close() throws IOException {
+    FileChannel channel = mChannel;
+    mChannel = null;
+    mIndex = null;
+    mSegments = new MappedByteBuffer[0];
+    if (channel != null && mOwnChannel)
+      channel.close();
+  }
+
+  private void openLocked(FileChannel channel, boolean readOnly, int capacity, int recordSize)
+      throws IOException {
+    mChannel = channel;
+    mOwnChannel = !readOnly;
+    mReadOnly = readOnly;
+    boolean create = channel.size() == 0;
+    if (create) {
+      if (readOnly)
+        throw new IOException("Empty key store file");
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putLong(H_MAGIC, MAGIC).putInt(H_VERSION, VERSION).putInt(H_RECORD_SIZE, recordSize)
+          .putInt(H_CAPACITY, capacity);
+      channel.write(header, 0);
+    } else {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      channel.read(header, 0);
+      if (header.getLong(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION)
+        throw new IOException("No HIBE key store");
+      capacity = header.getInt(H_CAPACITY);
+      recordSize = header.getInt(H_RECORD_SIZE);
+      if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY || recordSize <= R_DATA
+          || recordSize > SEGMENT_SIZE)
+        throw new IOException("Corrupt HIBE key store header");
+    }
+
+    mCapacity = capacity;
+    mRecordSize = recordSize;
+    mRecordsPerSegment = SEGMENT_SIZE / recordSize;
+    mRecordsOffset = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    mIndex = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0,
+        mRecordsOffset);
+    mSegments = new MappedByteBuffer[0];
+    if (readOnly) {
+      // mappings stay valid when the channel is closed, lazy mapping would not work after that
+      long segmentSize = (long) mRecordsPerSegment * recordSize;
+      long segments = (channel.size() - mRecordsOffset + segmentSize - 1) / segmentSize;
+      for (int i = 0; i < segments; i++) {
+        segment(i);
+      }
+    }
+    if (logger.isDebugEnabled())
+      logger.debug((create ? "created" : "opened") + " key store with " + entries() + " entries");
+  }
+
+  /**
+   * Writes the mapped changes to the file, <code>stream</code> must be <code>null</code>.
+   */
+  @Override
+  public void engineStore(OutputStream stream, char[] password) throws IOException {
+    if (stream != null)
+      throw new IOException("HIBE key stores are written to their mapped file, store with a null stream");
+    force();
+  }
+
+  @Override
+  public void engineStore(KeyStore.LoadStoreParameter param) throws IOException {
+    force();
+  }
+
+  private synchronized void force() {
+    checkLoaded();
+    if (mReadOnly)
+      return;
+    for (MappedByteBuffer segment : mSegments) {
+      segment.force();
+    }
+    mIndex.force();
+  }
+
+  @Override
+  public Key engineGetKey(String alias, char[] password) throws UnrecoverableKeyException {
+    byte[] encoded;
+    byte type;
+    mLock.readLock().lock();
+    try {
+      long record = find(alias);
+      if (record < 0)
+        return null;
+      ByteBuffer buffer = record(record);
+      type = buffer.get(R_TYPE);
+      encoded = new byte[buffer.getInt(R_KEY_LENGTH)];
+      buffer.position(R_DATA + (buffer.getShort(R_ALIAS_LENGTH) & 0xffff));
+      buffer.get(encoded);
+    } finally {
+      mLock.readLock().unlock();
+    }
+    try {
+      return (type == TYPE_DEL_PRIVATE_KEY) ? new HIBSDelPrivKey(encoded) : new HIBSPrivateKey(encoded);
+    } catch (InvalidKeyException e) {
+      UnrecoverableKeyException uke = new UnrecoverableKeyException("Key " + alias + " not decodable");
+      uke.initCause(e);
+      throw uke;
+    }
+  }
+
+  @Override
+  public KeyStore.Entry engineGetEntry(String alias, KeyStore.ProtectionParameter protParam)
+      throws UnrecoverableKeyException {
+    Key key = engineGetKey(alias, null);
+    return (key == null) ? null : new KeyEntry((PrivateKey) key);
+  }
+
+  @Override
+  public void engineSetEntry(String alias, KeyStore.Entry entry, KeyStore.ProtectionParameter protParam)
+      throws KeyStoreException {
+    if (entry instanceof KeyEntry)
+      engineSetKeyEntry(alias, ((KeyEntry) entry).getKey(), null, null);
+    else if (entry instanceof KeyStore.PrivateKeyEntry)
+      engineSetKeyEntry(alias, ((KeyStore.PrivateKeyEntry) entry).getPrivateKey(), null, null);
+    else
+      throw new KeyStoreException("Only HIBE private keys can be stored");
+  }
+
+  @Override
+  public boolean engineEntryInstanceOf(String alias, Class<? extends KeyStore.Entry> entryClass) {
+    return entryClass == KeyEntry.class && engineContainsAlias(alias);
+  }
+
+  @Override
+  public Certificate[] engineGetCertificateChain(String alias) {
+    return null;
+  }
+
+  @Override
+  public Certificate engineGetCertificate(String alias) {
+    return null;
+  }
+
+  @Override
+  public Date engineGetCreationDate(String alias) {
+    mLock.readLock().lock();
+    try {
+      long record = find(alias);
+      return (record < 0) ? null : new Date(record(record).getLong(R_DATE));
+    } finally {
+      mLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores the key, the certificate chain and password are ignored.
+   */
+  @Override
+  public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain)
+      throws KeyStoreException {
+    byte type;
+    if (key instanceof HIBSDelPrivKey)
+      type = TYPE_DEL_PRIVATE_KEY;
+    else if (key instanceof HIBSPrivateKey)
+      type = TYPE_PRIVATE_KEY;
+    else
+      throw new KeyStoreException("Only HIBE private keys can be stored");
+    checkWritable();
+
+    byte[] aliasBytes = alias.getBytes(StandardCharsets.UTF_8);
+    byte[] encoded = key.getEncoded();
+    if (aliasBytes.length > 0xffff || R_DATA + aliasBytes.length + encoded.length > mRecordSize)
+      throw new KeyStoreException("Entry " + alias + " does not fit into a record of " + mRecordSize + " bytes");
+
+    mLock.writeLock().lock();
+    try {
+      int hash = hash(aliasBytes);
+      int slot = probe(hash, aliasBytes);
+      long index = index(mIndex.getLong(slotOffset(slot)));
+      boolean replace = index != SLOT_EMPTY;
+      if (!replace && entries() >= (mCapacity / 4) * 3L)
+        throw new KeyStoreException("Key store is full, create it with a larger capacity");
+
+      // a new record is written and referenced once it is complete, the entry it replaces stays
+      // intact until then, so a crash loses at most the new entry
+      long record = allocate();
+      ByteBuffer buffer = record(record);
+      buffer.put(R_STATE, STATE_DELETED);
+      buffer.put(R_TYPE, type).putShort(R_ALIAS_LENGTH, (short) aliasBytes.length)
+          .putInt(R_KEY_LENGTH, encoded.length).putLong(R_DATE, System.currentTimeMillis());
+      buffer.position(R_DATA);
+      buffer.put(aliasBytes).put(encoded);
+      buffer.put(R_STATE, STATE_LIVE);
+
+      mIndex.putLong(slotOffset(slot), ((long) hash << 32) | (record + 1));
+      if (replace)
+        free(index - 1);
+      else
+        mIndex.putLong(H_ENTRIES, entries() + 1);
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+    throw new KeyStoreException("Only HIBE private key objects can be stored");
+  }
+
+  @Override
+  public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+    throw new KeyStoreException("HIBE key stores hold no certificates");
+  }
+
+  /**
+   * Removes the alias, its record is reused by later entries.
+   */
+  @Override
+  public void engineDeleteEntry(String alias) throws KeyStoreException {
+    checkWritable();
+    byte[] aliasBytes = alias.getBytes(StandardCharsets.UTF_8);
+    mLock.writeLock().lock();
+    try {
+      int hash = hash(aliasBytes);
+      int slot = probe(hash, aliasBytes);
+      long index = index(mIndex.getLong(slotOffset(slot)));
+      if (index == SLOT_EMPTY)
+        return;
+      remove(slot);
+      free(index - 1);
+      mIndex.putLong(H_ENTRIES, entries() - 1);
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Enumerates a snapshot of the aliases in the order of the hash table.
+   */
+  @Override
+  public Enumeration<String> engineAliases() {
+    checkLoaded();
+    List<String> aliases = new ArrayList<>();
+    mLock.readLock().lock();
+    try {
+      for (int slot = 0; slot < mCapacity; slot++) {
+        long index = index(mIndex.getLong(slotOffset(slot)));
+        if (index != SLOT_EMPTY && record(index - 1).get(R_STATE) == STATE_LIVE)
+          aliases.add(alias(record(index - 1)));
+      }
+    } finally {
+      mLock.readLock().unlock();
+    }
+    return Collections.enumeration(aliases);
+  }
+
+  @Override
+  public boolean engineContainsAlias(String alias) {
+    mLock.readLock().lock();
+    try {
+      return find(alias) >= 0;
+    } finally {
+      mLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int engineSize() {
+    checkLoaded();
+    return (int) Math.min(entries(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean engineIsKeyEntry(String alias) {
+    return engineContainsAlias(alias);
+  }
+
+  @Override
+  public boolean engineIsCertificateEntry(String alias) {
+    return false;
+  }
+
+  @Override
+  public String engineGetCertificateAlias(Certificate cert) {
+    return null;
+  }
+
+  /**
+   * @return the live record of <code>alias</code>, -1 if it is not contained
+   */
+  private long find(String alias) {
+    checkLoaded();
+    byte[] aliasBytes = alias.getBytes(StandardCharsets.UTF_8);
+    long index = index(mIndex.getLong(slotOffset(probe(hash(aliasBytes), aliasBytes))));
+    if (index == SLOT_EMPTY || record(index - 1).get(R_STATE) != STATE_LIVE)
+      return -1;
+    return index - 1;
+  }
+
+  /**
+   * Linear probing from the slot of <code>hash</code>.
+   *
+   * @return the slot of the alias, else the empty slot it would be added to
+   */
+  private int probe(int hash, byte[] aliasBytes) {
+    int mask = mCapacity - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      long value = mIndex.getLong(slotOffset(slot));
+      long index = index(value);
+      if (index == SLOT_EMPTY
+          || ((int) (value >>> 32) == hash && matches(record(index - 1), aliasBytes)))
+        return slot;
+    }
+  }
+
+  /**
+   * Empties <code>slot</code> and moves the following slots of its probe sequence back, so no
+   * tombstones are left and the table holds exactly the entries.
+   */
+  private void remove(int slot) {
+    int mask = mCapacity - 1;
+    for (int next = (slot + 1) & mask; ; next = (next + 1) & mask) {
+      long value = mIndex.getLong(slotOffset(next));
+      if (index(value) == SLOT_EMPTY)
+        break;
+      // an entry stays if its home slot lies cyclically in (slot, next]
+      int home = (int) (value >>> 32) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        mIndex.putLong(slotOffset(slot), value);
+        slot = next;
+      }
+    }
+    mIndex.putLong(slotOffset(slot), SLOT_EMPTY);
+  }
+
+  /**
+   * @return a record from the free list, else a new one at the end of the file
+   */
+  private long allocate() throws KeyStoreException {
+    long free = mIndex.getLong(H_FREE);
+    if (free != 0) {
+      mIndex.putLong(H_FREE, record(free - 1).getLong(R_DATE));
+      return free - 1;
+    }
+    long record = mIndex.getLong(H_RECORDS);
+    if (record >= INDEX_MASK - 1)
+      throw new KeyStoreException("Key store is full, create it with a larger capacity");
+    mIndex.putLong(H_RECORDS, record + 1);
+    return record;
+  }
+
+  /**
+   * Adds an unreferenced record to the free list.
+   */
+  private void free(long record) {
+    ByteBuffer buffer = record(record);
+    buffer.put(R_STATE, STATE_DELETED);
+    buffer.putLong(R_DATE, mIndex.getLong(H_FREE));
+    mIndex.putLong(H_FREE, record + 1);
+  }
+
+  private static boolean matches(ByteBuffer record, byte[] aliasBytes) {
+    if ((record.getShort(R_ALIAS_LENGTH) & 0xffff) != aliasBytes.length)
+      return false;
+    for (int i = 0; i < aliasBytes.length; i++) {
+      if (record.get(R_DATA + i) != aliasBytes[i])
+        return false;
+    }
+    return true;
+  }
+
+  private static String alias(ByteBuffer record) {
+    byte[] aliasBytes = new byte[record.getShort(R_ALIAS_LENGTH) & 0xffff];
+    record.position(R_DATA);
+    record.get(aliasBytes);
+    return new String(aliasBytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return a buffer of the record with its own position, starting at the record
+   */
+  private ByteBuffer record(long record) {
+    int segment = (int) (record / mRecordsPerSegment);
+    ByteBuffer buffer = segment(segment).duplicate();
+    buffer.position((int) (record % mRecordsPerSegment) * mRecordSize);
+    buffer.limit(buffer.position() + mRecordSize);
+    return buffer.slice();
+  }
+
+  private MappedByteBuffer segment(int segment) {
+    MappedByteBuffer[] segments = mSegments;
+    if (segment < segments.length && segments[segment] != null)
+      return segments[segment];
+    synchronized (this) {
+      segments = mSegments;
+      if (segment >= segments.length || segments[segment] == null) {
+        segments = Arrays.copyOf(segments, Math.max(segments.length, segment + 1));
+        long position = mRecordsOffset + (long) segment * mRecordsPerSegment * mRecordSize;
+        long size = (long) mRecordsPerSegment * mRecordSize;
+        try {
+          // writable segments are mapped completely, which extends the file
+          if (mReadOnly)
+            segments[segment] = mChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(size, mChannel.size() - position));
+          else
+            segments[segment] = mChannel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        } catch (IOException e) {
+          throw new IllegalStateException("Key store segment " + segment + " not mappable", e);
+        }
+        mSegments = segments;
+      }
+      return segments[segment];
+    }
+  }
+
+  private long entries() {
+    return mIndex.getLong(H_ENTRIES);
+  }
+
+  private static long index(long slotValue) {
+    return slotValue & INDEX_MASK;
+  }
+
+  private static int slotOffset(int slot) {
+    return HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  private static int hash(byte[] aliasBytes) {
+    int h = Arrays.hashCode(aliasBytes);
+    return h ^ (h >>> 16);
+  }
+
+  private void checkLoaded() {
+    if (mIndex == null)
+      throw new IllegalStateException("Key store not loaded");
+  }
+
+  private void checkWritable() throws KeyStoreException {
+    checkLoaded();
+    if (mReadOnly)
+      throw new KeyStoreException("Key store is opened read only");
+  }
+}
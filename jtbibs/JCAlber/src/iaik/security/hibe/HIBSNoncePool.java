@@ -0,0 +1,157 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import Entities.IdentityPath;
+import Entities.LruCache;
+import Entities.PublicParams;
+import Entities.SigningNonce;
+import HIBE.Hibe;
+import org.apache.log4j.Logger;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online/offline signing with a {@link HIBSDelPrivKey}.
+ * <p>
+ * Keeps a bounded pool of {@link SigningNonce}s per key and identities, refilled by background
+ * threads. A compact leaf signature then only needs one G1 scalar multiplication on the critical
+ * path. If the pool runs dry the nonce is computed by the caller. Pools are safe to be shared
+ * between threads, {@link #forKey} returns the shared pool of a key and {@link #evict} drops it
+ * together with its nonces once the key expired.
+ */
+public class HIBSNoncePool {
+  private static Logger logger = Logger.getLogger(HIBSNoncePool.class);
+
+  /**
+   * Number of nonces kept per key.
+   */
+  public static final int POOL_SIZE = 32;
+
+  /**
+   * Number of keys a pool is kept for.
+   */
+  public static final int KEY_CACHE_SIZE = 16;
+
+  private static final LruCache<List<ByteBuffer>, HIBSNoncePool> sPools = new LruCache<>(KEY_CACHE_SIZE);
+
+  private static final ExecutorService sRefill = Executors.newFixedThreadPool(
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+        Thread t = new Thread(r, "HIBS nonce refill");
+        t.setDaemon(true);
+        return t;
+      });
+
+  private final Hibe mHibe;
+  private final HIBSKeyPairParamSpec mParams;
+  private final DelegatedSecretKey mKey;
+  private final PublicParams mPP;
+  private final IdentityPath mPath;
+  private final BlockingQueue<SigningNonce> mNonces;
+  private final AtomicBoolean mRefilling = new AtomicBoolean();
+  private volatile boolean mEvicted;
+
+  /**
+   * Returns the shared pool for the given key delegated to <code>ids</code>, creating it on first use.
+   */
+  public static HIBSNoncePool forKey(HIBSDelPrivKey key, List<byte[]> ids) {
+    List<ByteBuffer> cacheKey = cacheKey(key, ids);
+    HIBSNoncePool pool = sPools.get(cacheKey);
+    if (pool == null) {
+      pool = new HIBSNoncePool(key, ids, POOL_SIZE);
+      sPools.put(cacheKey, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Removes the shared pool of the key, if there is one, and discards its nonces. The pool is not
+   * refilled anymore, holders of it still sign but compute every nonce themselves.
+   */
+  public static void evict(HIBSDelPrivKey key, List<byte[]> ids) {
+    List<ByteBuffer> cacheKey = cacheKey(key, ids);
+    HIBSNoncePool pool = sPools.get(cacheKey);
+    if (pool == null)
+      return;
+    sPools.remove(cacheKey);
+    pool.mEvicted = true;
+    pool.mNonces.clear();
+  }
+
+  private static List<ByteBuffer> cacheKey(HIBSDelPrivKey key, List<byte[]> ids) {
+    List<ByteBuffer> cacheKey = new ArrayList<>(ids.size() + 1);
+    cacheKey.add(ByteBuffer.wrap(key.getEncoded()));
+    for (byte[] id : ids) {
+      cacheKey.add(ByteBuffer.wrap(id.clone()));
+    }
+    return Collections.unmodifiableList(cacheKey);
+  }
+
+  public HIBSNoncePool(HIBSDelPrivKey key, List<byte[]> ids, int size) {
+    mParams = key.getParams();
+    mHibe = mParams.getHibe();
+    mKey = key.getDelSecK();
+    if (ids.size() != mKey.depth)
+      throw new IllegalArgumentException("Number of IDs not matching delegation depth");
+    mPP = mParams.getSharedPP();
+    mPath = IdentityPath.of(mPP, ids);
+    mNonces = new ArrayBlockingQueue<>(size);
+    refill();
+  }
+
+  /**
+   * Signs <code>msg</code> as leaf with a nonce from the pool.
+   */
+  public DelegatedSecretKey sign(byte[] msg) {
+    return sign(HIBSWithSHA256Signature.hashMessage(mPP, msg));
+  }
+
+  /**
+   * Same as {@link #sign(byte[])} with the hash of the message already computed.
+   */
+  public DelegatedSecretKey sign(BigInteger msgHash) {
+    SigningNonce nonce = mNonces.poll();
+    if (nonce == null) {
+      logger.debug("nonce pool empty");
+      nonce = precompute();
+    }
+    if (mNonces.size() < mNonces.remainingCapacity()) // less than half full
+      refill();
+    return mHibe.sign(mPP, nonce, msgHash);
+  }
+
+  public int getAvailable() {
+    return mNonces.size();
+  }
+
+  private SigningNonce precompute() {
+    return mHibe.precomputeNonce(mPP, mPath, mKey);
+  }
+
+  private void refill() {
+    if (mEvicted || !mRefilling.compareAndSet(false, true))
+      return;
+    sRefill.execute(() -> {
+      try {
+        while (!mEvicted && mNonces.remainingCapacity() > 0) {
+          if (!mNonces.offer(precompute()))
+            break;
+        }
+        if (mEvicted)
+          mNonces.clear(); // a nonce computed while evicting
+      } catch (RuntimeException e) {
+        logger.error("Refilling nonce pool failed", e);
+      } finally {
+        mRefilling.set(false);
+      }
+    });
+  }
+}
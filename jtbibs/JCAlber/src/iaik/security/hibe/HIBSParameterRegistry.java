@@ -0,0 +1,48 @@
+package iaik.security.hibe;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of parameter sets, keyed by {@link HIBSKeyPairParamSpec#getDigest()}.
+ * <p>
+ * Keys and signatures made with parameters from {@link HIBSKeyPairParamSpec#withParameterReferences}
+ * only carry the digest of their parameters instead of the parameters themselves, decoding them
+ * looks the parameters up here. Parameters known from elsewhere, e.g. the certificate of the root
+ * key, are registered with {@link #register} before such keys and signatures are decoded.
+ * Nothing is registered implicitly.
+ */
+public final class HIBSParameterRegistry {
+
+  private static final Map<ByteBuffer, HIBSKeyPairParamSpec> sParams = new ConcurrentHashMap<>();
+
+  private HIBSParameterRegistry() {
+  }
+
+  /**
+   * Registers <code>params</code>, a parameter set already registered under the same digest is kept.
+   *
+   * @return the digest the parameters are referenced by
+   */
+  public static byte[] register(HIBSKeyPairParamSpec params) {
+    byte[] digest = params.getDigest();
+    sParams.putIfAbsent(ByteBuffer.wrap(digest), params);
+    return digest;
+  }
+
+  /**
+   * @return the registered parameters with the given digest, <code>null</code> if unknown
+   */
+  public static HIBSKeyPairParamSpec lookup(byte[] digest) {
+    return sParams.get(ByteBuffer.wrap(digest));
+  }
+
+  public static void unregister(HIBSKeyPairParamSpec params) {
+    sParams.remove(ByteBuffer.wrap(params.getDigest()));
+  }
+
+  public static int size() {
+    return sParams.size();
+  }
+}
@@ -0,0 +1,82 @@
+package iaik.security.hibe;
+
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.util.Arrays;
+
+/**
+ * Encoding of the points in HIBE parameters, keys and signatures.
+ * <p>
+ * Points are encoded uncompressed (0x04 || X || Y) unless point compression is enabled for the
+ * parameters with {@link HIBSKeyPairParamSpec#withPointCompression}, then as 0x02/0x03 || X,
+ * which halves the size of the large G2 points. Decoding accepts both forms regardless of the
+ * setting.
+ */
+public final class HIBSPointCodec {
+
+  private static final byte UNCOMPRESSED = 0x04;
+  private static final byte COMPRESSED_EVEN = 0x02;
+  private static final byte COMPRESSED_ODD = 0x03;
+
+  private HIBSPointCodec() {
+  }
+
+  /**
+   * @param compress encode compressed, see {@link HIBSKeyPairParamSpec#isPointCompression}
+   */
+  public static byte[] encode(ECPoint point, boolean compress) {
+    return compress ? compress(point) : point.encodePoint();
+  }
+
+  /**
+   * Returns the compressed encoding of <code>point</code>, tagged with the sgn0 of y as in RFC 9380,
+   * section 4.1. For points over F_p that is the parity of y. For points over F_p^2, y = y_0 + y_1 * u,
+   * it is the parity of y_0, or of y_1 if y_0 is zero. The uncompressed encoding holds y_1 || y_0,
+   * the coefficient of u first.
+   *
+   * @throws IllegalArgumentException if the coordinates of the encoding are neither from F_p nor F_p^2
+   */
+  public static byte[] compress(ECPoint point) {
+    byte[] uncompressed = point.encodePoint();
+    if (uncompressed.length == 1 || uncompressed[0] != UNCOMPRESSED)
+      return uncompressed; // point at infinity or already compressed
+
+    int coordinateLength = (uncompressed.length - 1) / 2;
+    int primeLength = (point.getCurve().getOrder().bitLength() + 7) / 8;
+    int y = 1 + coordinateLength;
+    int sign;
+    if ((uncompressed.length & 1) == 1 && coordinateLength == primeLength) {
+      sign = uncompressed[uncompressed.length - 1] & 1;
+    } else if ((uncompressed.length & 1) == 1 && coordinateLength == 2 * primeLength) {
+      int y0 = y + primeLength;
+      int sign0 = uncompressed[uncompressed.length - 1] & 1;
+      int sign1 = uncompressed[y0 - 1] & 1;
+      sign = sign0 | (isZero(uncompressed, y0, primeLength) & sign1);
+    } else {
+      throw new IllegalArgumentException("Sign of y unknown for coordinates of " + coordinateLength + " bytes");
+    }
+
+    byte[] compressed = Arrays.copyOf(uncompressed, y);
+    compressed[0] = (sign == 0) ? COMPRESSED_EVEN : COMPRESSED_ODD;
+    return compressed;
+  }
+
+  /**
+   * @return 1 if the <code>len</code> bytes at <code>off</code> are all zero, else 0
+   */
+  private static int isZero(byte[] b, int off, int len) {
+    int or = 0;
+    for (int i = off; i < off + len; i++) {
+      or |= b[i];
+    }
+    return ((or & 0xff) - 1) >>> 31;
+  }
+
+  /**
+   * @return length of the encoding of a point starting with <code>tag</code>, for uncompressed
+   * encodings of length <code>uncompressedLength</code>
+   */
+  static int encodedLength(byte tag, int uncompressedLength) {
+    return (tag == UNCOMPRESSED) ? uncompressedLength : 1 + (uncompressedLength - 1) / 2;
+  }
+}
@@ -0,0 +1,60 @@
+package iaik.security.hibe;
+
+import java.security.MessageDigest;
+
+/**
+ * HIBS signature over a SHA-256 digest computed by the caller ("NONEwithHIBE").
+ * <p>
+ * The data fed to the signature is the 32 bytes long digest of the message, which is mapped to
+ * Z_p with {@link Entities.PublicParams#hashDigest}. For
+ * {@link Entities.IdentityHash.Version#REJECTION_SAMPLING} parameters the signatures are the same
+ * as {@link HIBSWithSHA256Signature} creates for the message itself. For
+ * {@link Entities.IdentityHash.Version#EXPAND_XMD} parameters they are not, because the digest is
+ * expanded instead of the message. Such signatures only verify with this engine.
+ */
+public class HIBSPrehashedSignature extends HIBSWithSHA256Signature {
+
+  public HIBSPrehashedSignature() {
+    super(new Prehashed());
+  }
+
+  /**
+   * Collects the digest fed as data. Returns an empty digest unless exactly
+   * {@link #DIGEST_LENGTH} bytes were fed, which signing and verifying reject.
+   */
+  private static final class Prehashed extends MessageDigest {
+
+    private final byte[] mDigest = new byte[DIGEST_LENGTH];
+    private long mLength;
+
+    Prehashed() {
+      super("NONE");
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+      if (mLength < DIGEST_LENGTH)
+        mDigest[(int) mLength] = input;
+      mLength++;
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+      if (mLength + len <= DIGEST_LENGTH)
+        System.arraycopy(input, offset, mDigest, (int) mLength, len);
+      mLength += len;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+      byte[] digest = (mLength == DIGEST_LENGTH) ? mDigest.clone() : new byte[0];
+      engineReset();
+      return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+      mLength = 0;
+    }
+  }
+}
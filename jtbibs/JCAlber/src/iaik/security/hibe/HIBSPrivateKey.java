@@ -107,8 +107,8 @@ public class HIBSPrivateKey extends PrivateKeyInfo {
 
     try {
       private_key_algorithm = (AlgorithmID) HIBSProvider.HIBS_ALG.clone();
-      private_key_algorithm.setParameter(params_.toASN1Object());
-      encodedPrivateKey_ = params_.getG1().encodePoint(p_);
+      private_key_algorithm.setParameter(params_.toKeyASN1Object());
+      encodedPrivateKey_ = HIBSPointCodec.encode(p_, params_.isPointCompression());
     } catch (Exception e) {
       throw new iaik.utils.InternalErrorException("Unable to encode key!", e);
     }
@@ -100,6 +100,13 @@ public final class HIBSProvider extends Provider {
     oid = oid+".1";
     className = "iaik.security.hibe.HIBSWithSHA256Signature";
     putService(new Service(this, type, algorithm, className, aliases, supportedAttributes));
+
+    className = "iaik.security.hibe.HIBSPrehashedSignature";
+    putService(new Service(this, type, "NONEwithHIBE", className, Arrays.asList("NONEwithHIBS"), supportedAttributes));
+
+    type = "KeyStore";
+    className = "iaik.security.hibe.HIBSKeyStore";
+    putService(new Service(this, type, algorithm, className, Arrays.asList("HIBS"), supportedAttributes));
     
         
   }    
@@ -2,6 +2,7 @@ package iaik.security.hibe;
 
 import java.security.InvalidKeyException;
 
+import Entities.LazyPointList;
 import Entities.PublicParams;
 import iaik.asn1.*;
 import iaik.asn1.structures.AlgorithmID;
@@ -14,7 +15,7 @@ import iaik.x509.PublicKeyInfo;
 public class HIBSPublicKey extends PublicKeyInfo
 {
 
-	private ECPoint p_;
+	private volatile ECPoint p_; // decoded on first use
 	private transient byte[] encodedPublicKey_;
 	
 	/**
@@ -92,12 +93,8 @@ public class HIBSPublicKey extends PublicKeyInfo
 				throw new HIBSInvalidKeyException("No HIBE public key: No parameters specified!");
 			}
 
-			HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.decode(parameters);
-
-			final ECPoint pTmp = params.getG2().decodePoint(encodedPublicKey_);
-
-			params_ = params;
-			p_ = pTmp;
+			// the point is decoded by getP()
+			params_ = HIBSKeyPairParamSpec.decode(parameters);
 
 		} catch (Exception ex) {
 			throw new HIBSInvalidKeyException("Error parsing key: " + ex.getMessage(), ex);
@@ -112,8 +109,8 @@ public class HIBSPublicKey extends PublicKeyInfo
 
   	try {
   	  public_key_algorithm = (AlgorithmID) HIBSProvider.HIBS_ALG.clone();
-      public_key_algorithm.setParameter(params_.toASN1Object());
-      encodedPublicKey_ = params_.getG2().encodePoint(p_);
+      public_key_algorithm.setParameter(params_.toKeyASN1Object());
+      encodedPublicKey_ = HIBSPointCodec.encode(p_, params_.isPointCompression());
 		} catch (final Exception e) {
 			throw new RuntimeException("Unable to encode key!", e);
 		}
@@ -154,7 +151,7 @@ public class HIBSPublicKey extends PublicKeyInfo
 		StringBuilder builder = new StringBuilder();
 
 		builder.append("Point: ");
-		builder.append(p_.toString());
+		builder.append(getP().toString());
 		builder.append("\nParameter: ");
 
 		if (params_ != null) {
@@ -188,11 +185,25 @@ public class HIBSPublicKey extends PublicKeyInfo
 		return super.equals(other);
 	}
 
+	/**
+	 * Returns the public key point, decoding it on first use.
+	 *
+	 * @throws IllegalArgumentException if the encoded point is not on the curve of the parameters
+	 */
 	public ECPoint getP() {
-		return p_;
+		ECPoint p = p_;
+		if (p == null) {
+			p = LazyPointList.decode(params_.getG2(), encodedPublicKey_);
+			p_ = p;
+		}
+		return p;
 	}
 
 	public PublicParams getPP() {
 		return params_.getPP();
 	}
+
+	public HIBSKeyPairParamSpec getParams() {
+		return params_;
+	}
 }
@@ -0,0 +1,199 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import Entities.IdentityPath;
+import Entities.PublicParams;
+import HIBE.Hibe;
+import iaik.security.ec.errorhandling.DecodingException;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.ec.math.curve.EllipticCurve;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+
+/**
+ * Raw encoding of parameters, keys and signatures in the layout of <code>tbibs_*_write</code> and
+ * <code>tbibs_*_read</code> of ctbibs:
+ * <ul>
+ * <li>parameters: the number of identity levels without the message level</li>
+ * <li>public key: pk (G2)</li>
+ * <li>secret key: sk (G1)</li>
+ * <li>delegated key: a_0 (G1), a_1 (G2), g3 * h_1^H(I_1) * ... * h_k^H(I_k) (G1), b_k (G1)</li>
+ * <li>signature: a_0 (G1), a_1 (G2)</li>
+ * </ul>
+ * Every length is written as unsigned 64 bit little endian integer, every point as its length
+ * followed by its uncompressed encoding. There is no ASN.1 framing, the parameters and identities
+ * have to be known by the reader.
+ * <p>
+ * Data is read from the position of the source buffer and written at the position of the
+ * destination buffer, which is advanced. Lengths are always little endian whatever the byte
+ * order of the buffer, which is left unchanged.
+ */
+public final class HIBSRawCodec {
+
+  private static final int LENGTH_BYTES = Long.BYTES;
+
+  private HIBSRawCodec() {
+  }
+
+  /**
+   * Writes the number of identity levels of <code>params</code>, i.e. the levels below the message.
+   */
+  public static void writePublicParams(ByteBuffer dst, HIBSKeyPairParamSpec params) {
+    writeLength(dst, params.getPP().max_hibe_height - 1);
+  }
+
+  /**
+   * Reads the number of identity levels written by {@link #writePublicParams}. Parameters with
+   * one more level, for the message, have to be set up by the caller.
+   */
+  public static int readPublicParamsLevels(ByteBuffer src) throws HIBSInvalidKeyException {
+    try {
+      long levels = readLength(src);
+      if (levels < 1 || levels >= Integer.MAX_VALUE)
+        throw new HIBSInvalidKeyException("Invalid number of levels " + levels);
+      return (int) levels;
+    } catch (BufferUnderflowException e) {
+      throw new HIBSInvalidKeyException("Parameters truncated", e);
+    }
+  }
+
+  public static void writePublicKey(ByteBuffer dst, HIBSPublicKey key) {
+    writePoint(dst, key.getP());
+  }
+
+  public static HIBSPublicKey readPublicKey(ByteBuffer src, HIBSKeyPairParamSpec params)
+      throws HIBSInvalidKeyException {
+    try {
+      return new HIBSPublicKey(params, readPoint(src, params.getG2()));
+    } catch (BufferUnderflowException | IllegalArgumentException | DecodingException e) {
+      throw new HIBSInvalidKeyException("Public key not decodable: " + e.getMessage(), e);
+    }
+  }
+
+  public static void writeSecretKey(ByteBuffer dst, HIBSPrivateKey key) {
+    writePoint(dst, key.getP());
+  }
+
+  public static HIBSPrivateKey readSecretKey(ByteBuffer src, HIBSKeyPairParamSpec params)
+      throws HIBSInvalidKeyException {
+    try {
+      return new HIBSPrivateKey(params, readPoint(src, params.getG1()));
+    } catch (BufferUnderflowException | IllegalArgumentException | DecodingException e) {
+      throw new HIBSInvalidKeyException("Secret key not decodable: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Writes a key delegated to <code>path</code>. Only b_k is written, so the key read back can
+   * sign but not be delegated further, like a delegated key of ctbibs.
+   *
+   * @param path the identities the key was delegated to
+   */
+  public static void writeDelegatedKey(ByteBuffer dst, HIBSDelPrivKey key, IdentityPath path)
+      throws HIBSInvalidKeyException {
+    DelegatedSecretKey dsk = key.getDelSecK();
+    if (dsk.depth != path.size() || dsk.b.isEmpty())
+      throw new HIBSInvalidKeyException("Key is not delegated to " + path.size() + " identities");
+
+    ECPoint precomp = dsk.getPrecomp(path);
+    if (precomp == null) {
+      Hibe hibe = key.getParams().getHibe();
+      PublicParams pp = key.getParams().getSharedPP();
+      precomp = pp.g3;
+      for (int i = 0; i < path.size(); i++) {
+        precomp = hibe.extendPrefix(pp, precomp, i, path.hash(i));
+      }
+    }
+
+    writePoint(dst, dsk.a0);
+    writePoint(dst, dsk.a1);
+    writePoint(dst, precomp);
+    writePoint(dst, dsk.get_b_k());
+  }
+
+  /**
+   * Reads a key written by {@link #writeDelegatedKey}, the identity product is stored in the key
+   * and not recomputed.
+   *
+   * @param path the identities the key was delegated to
+   */
+  public static HIBSDelPrivKey readDelegatedKey(ByteBuffer src, HIBSKeyPairParamSpec params, IdentityPath path)
+      throws HIBSInvalidKeyException {
+    try {
+      ECPoint a0 = readPoint(src, params.getG1());
+      ECPoint a1 = readPoint(src, params.getG2());
+      ECPoint precomp = readPoint(src, params.getG1());
+      ECPoint b = readPoint(src, params.getG1());
+      DelegatedSecretKey dsk = new DelegatedSecretKey(a0, a1, Collections.singletonList(b), path.size());
+      dsk.setPrecomp(path, precomp);
+      return new HIBSDelPrivKey(params, dsk);
+    } catch (BufferUnderflowException | IllegalArgumentException | DecodingException e) {
+      throw new HIBSInvalidKeyException("Delegated key not decodable: " + e.getMessage(), e);
+    }
+  }
+
+  public static void writeSignature(ByteBuffer dst, DelegatedSecretKey signature) {
+    writePoint(dst, signature.a0);
+    writePoint(dst, signature.a1);
+  }
+
+  /**
+   * @param depth number of identities including the message, see {@link DelegatedSecretKey#depth}
+   */
+  public static DelegatedSecretKey readSignature(ByteBuffer src, HIBSKeyPairParamSpec params, int depth)
+      throws HIBSSignaturException {
+    try {
+      ECPoint a0 = readPoint(src, params.getG1());
+      ECPoint a1 = readPoint(src, params.getG2());
+      return new DelegatedSecretKey(a0, a1, Collections.emptyList(), depth);
+    } catch (BufferUnderflowException | IllegalArgumentException | DecodingException e) {
+      throw new HIBSSignaturException("Signature not decodable: " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return the maximal number of bytes written by {@link #writeSignature} for <code>params</code>
+   */
+  public static int maxSignatureLength(HIBSKeyPairParamSpec params) {
+    return 2 * LENGTH_BYTES + pointLength(params.getG1()) + pointLength(params.getG2());
+  }
+
+  /**
+   * @return the maximal number of bytes written by {@link #writeDelegatedKey} for <code>params</code>
+   */
+  public static int maxDelegatedKeyLength(HIBSKeyPairParamSpec params) {
+    return maxSignatureLength(params) + 2 * (LENGTH_BYTES + pointLength(params.getG1()));
+  }
+
+  private static int pointLength(EllipticCurve curve) {
+    return curve.getGenerator().encodePoint().length;
+  }
+
+  private static void writeLength(ByteBuffer dst, long length) {
+    dst.putLong(dst.order() == ByteOrder.LITTLE_ENDIAN ? length : Long.reverseBytes(length));
+  }
+
+  private static long readLength(ByteBuffer src) {
+    long length = src.getLong();
+    return (src.order() == ByteOrder.LITTLE_ENDIAN) ? length : Long.reverseBytes(length);
+  }
+
+  private static void writePoint(ByteBuffer dst, ECPoint point) {
+    // always uncompressed like ep_write_bin(.., 0) of ctbibs
+    byte[] encoded = point.encodePoint();
+    writeLength(dst, encoded.length);
+    dst.put(encoded);
+  }
+
+  private static ECPoint readPoint(ByteBuffer src, EllipticCurve curve) throws DecodingException {
+    long length = readLength(src);
+    if (length < 1 || length > pointLength(curve))
+      throw new IllegalArgumentException("Invalid point length " + length);
+    byte[] encoded = new byte[(int) length];
+    src.get(encoded);
+    return curve.decodePoint(encoded);
+  }
+}
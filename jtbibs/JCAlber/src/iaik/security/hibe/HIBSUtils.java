@@ -1,6 +1,7 @@
 package iaik.security.hibe;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 
 public class HIBSUtils {
@@ -15,19 +16,58 @@ public class HIBSUtils {
     }
 
     public static byte[] getEpoch(EpochGranularity g) throws Exception {
+        return getEpoch(g, Instant.now());
+    }
+
+    /**
+     * Identity of the epoch containing <code>time</code>: the start of the epoch in UTC as ISO-8601 string.
+     */
+    public static byte[] getEpoch(EpochGranularity g, Instant time) {
+        return getEpochStart(g, time).toString().getBytes();
+    }
+
+    /**
+     * @return the start of the epoch containing <code>time</code>, epochs are aligned in UTC
+     */
+    public static Instant getEpochStart(EpochGranularity g, Instant time) {
+        switch (g) {
+            case Year:
+                return time.atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).withDayOfYear(1).toInstant();
+            case Month:
+                return time.atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1).toInstant();
+            case Day:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            case HalfDay:
+                return time.truncatedTo(ChronoUnit.HALF_DAYS);
+            case Hour:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case Minutes:
+                return time.truncatedTo(ChronoUnit.MINUTES);
+            default:
+                throw new IllegalArgumentException("EpochGranularity not supported!");
+        }
+    }
+
+    /**
+     * @return the start of the epoch following the one containing <code>time</code>
+     */
+    public static Instant getNextEpochStart(EpochGranularity g, Instant time) {
+        Instant start = getEpochStart(g, time);
         switch (g) {
             case Year:
-                return Instant.now().truncatedTo(ChronoUnit.YEARS).toString().getBytes();
+                return start.atZone(ZoneOffset.UTC).plusYears(1).toInstant();
             case Month:
-                return Instant.now().truncatedTo(ChronoUnit.MONTHS).toString().getBytes();
+                return start.atZone(ZoneOffset.UTC).plusMonths(1).toInstant();
             case Day:
-                return Instant.now().truncatedTo(ChronoUnit.DAYS).toString().getBytes();
+                return start.plus(1, ChronoUnit.DAYS);
             case HalfDay:
-                return Instant.now().truncatedTo(ChronoUnit.HALF_DAYS).toString().getBytes();
+                return start.plus(1, ChronoUnit.HALF_DAYS);
+            case Hour:
+                return start.plus(1, ChronoUnit.HOURS);
             case Minutes:
-                return Instant.now().truncatedTo(ChronoUnit.MINUTES).toString().getBytes();
+                return start.plus(1, ChronoUnit.MINUTES);
             default:
-                throw new Exception("EpochGranularity not supported!");
+                throw new IllegalArgumentException("EpochGranularity not supported!");
         }
     }
 }
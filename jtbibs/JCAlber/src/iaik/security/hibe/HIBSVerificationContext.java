@@ -0,0 +1,176 @@
+package iaik.security.hibe;
+
+import Entities.DelegatedSecretKey;
+import Entities.LruCache;
+import Entities.PreparedPublicKey;
+import Entities.PublicParams;
+import HIBE.Hibe;
+import HIBE.PairingBatch;
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Verification state of a {@link HIBSPublicKey}.
+ * <p>
+ * Keeps the partial products <code>g3 * h_1^H(I_1) * ... * h_k^H(I_k)</code> of recently
+ * used identity prefixes (for TLS: the domain, then domain and epoch) in a bounded cache.
+ * Verifying a signature below a cached prefix then only hashes and multiplies the last
+ * level before the pairing product, like <code>tbibs_verify_with_precomp</code> in ctbibs.
+ * The constant pairing e(g2, pk) is computed once per key, see {@link PreparedPublicKey}.
+ * <p>
+ * Contexts are safe to be shared between threads, {@link #forKey} returns the shared
+ * context of a public key.
+ */
+public class HIBSVerificationContext {
+
+  /**
+   * Number of public keys a context is kept for.
+   */
+  public static final int KEY_CACHE_SIZE = 64;
+
+  /**
+   * Number of identity prefixes cached per public key.
+   */
+  public static final int PREFIX_CACHE_SIZE = 128;
+
+  private static final LruCache<ByteBuffer, HIBSVerificationContext> sContexts = new LruCache<>(KEY_CACHE_SIZE);
+
+  private final Hibe mHibe;
+  private final PublicParams mPP;
+  private final PreparedPublicKey mPubKey;
+  private final LruCache<List<ByteBuffer>, ECPoint> mPrefixes;
+
+  /**
+   * Returns the shared context for the given key, creating it on first use.
+   */
+  public static HIBSVerificationContext forKey(HIBSPublicKey key) {
+    ByteBuffer encoded = ByteBuffer.wrap(key.getEncoded());
+    HIBSVerificationContext context = sContexts.get(encoded);
+    if (context == null) {
+      context = new HIBSVerificationContext(key, PREFIX_CACHE_SIZE);
+      sContexts.put(encoded, context);
+    }
+    return context;
+  }
+
+  public HIBSVerificationContext(HIBSPublicKey key, int prefixCacheSize) {
+    mHibe = key.getParams().getHibe();
+    mPP = key.getParams().getSharedPP();
+    mPubKey = mHibe.preparePublicKey(mPP, key.getP());
+    mPrefixes = new LruCache<>(prefixCacheSize);
+  }
+
+  /**
+   * Returns <code>g3 * h_1^H(I_1) * ... * h_k^H(I_k)</code> for the given identities,
+   * extending the longest cached prefix. The returned point must not be modified.
+   *
+   * @param ids the identities I_1 ... I_k, may be empty
+   */
+  public ECPoint getPrefix(List<byte[]> ids) {
+    if (ids.isEmpty()) {
+      return mPP.g3;
+    }
+    if (ids.size() > mPP.h.size()) {
+      throw new IllegalArgumentException("More identities than levels in the public parameters");
+    }
+
+    ECPoint prefix = mPrefixes.get(toKey(ids, false));
+    if (prefix == null) {
+      ECPoint parent = getPrefix(ids.subList(0, ids.size() - 1));
+      prefix = mHibe.extendPrefix(mPP, parent, ids.size() - 1, ids.get(ids.size() - 1));
+      mPrefixes.put(toKey(ids, true), prefix);
+    }
+    return prefix;
+  }
+
+  /**
+   * Verifies a signature on <code>message</code> below the identities <code>ids</code>.
+   *
+   * @param ids       identities the signing key was delegated to
+   * @param message   signed message, i.e. the last identity level
+   * @param signature decoded signature
+   * @return <code>true</code> if the signature is valid
+   */
+  public boolean verify(List<byte[]> ids, byte[] message, DelegatedSecretKey signature) {
+    return verify(ids, HIBSWithSHA256Signature.hashMessage(mPP, message), signature);
+  }
+
+  /**
+   * Same as {@link #verify(List, byte[], DelegatedSecretKey)} with the hash of the message already
+   * computed, see {@link HIBSWithSHA256Signature#hashMessage}.
+   */
+  public boolean verify(List<byte[]> ids, BigInteger messageHash, DelegatedSecretKey signature) {
+    if (ids.size() + 1 != signature.depth || signature.depth > mPP.h.size()) {
+      return false;
+    }
+    return mHibe.ntDeterVerify(mPP, mPubKey, getPrefix(ids), messageHash, signature);
+  }
+
+  /**
+   * Adds the verification equation of a signature to <code>batch</code>, which must have been
+   * created by the engine of this key.
+   *
+   * @return index of the equation in the batch
+   */
+  public int addToBatch(PairingBatch batch, List<byte[]> ids, byte[] message, DelegatedSecretKey signature) {
+    if (ids.size() + 1 != signature.depth || signature.depth > mPP.h.size())
+      return batch.addInvalid();
+    return mHibe.addToBatch(batch, mPP, mPubKey, getPrefix(ids), HIBSWithSHA256Signature.hashMessage(mPP, message),
+        signature);
+  }
+
+  public Hibe getHibe() {
+    return mHibe;
+  }
+
+  /**
+   * Verifies many signatures below the same identities at once, see {@link Hibe#batchVerify}.
+   *
+   * @param ids        identities the signing keys were delegated to
+   * @param messages   signed messages
+   * @param signatures decoded signatures, in the same order as <code>messages</code>
+   * @return indices of the invalid signatures, empty if all are valid
+   */
+  public List<Integer> batchVerify(List<byte[]> ids, List<byte[]> messages, List<DelegatedSecretKey> signatures) {
+    if (messages.size() != signatures.size())
+      throw new IllegalArgumentException("Number of messages and signatures differ");
+    PairingBatch batch = mHibe.newBatch();
+    ECPoint prefix = getPrefix(ids);
+    for (int i = 0; i < signatures.size(); i++) {
+      DelegatedSecretKey signature = signatures.get(i);
+      if (ids.size() + 1 != signature.depth)
+        batch.addInvalid();
+      else
+        mHibe.addToBatch(batch, mPP, mPubKey, prefix, HIBSWithSHA256Signature.hashMessage(mPP, messages.get(i)),
+            signature);
+    }
+    return batch.findInvalid();
+  }
+
+  /**
+   * @return the public key with e(g2, pk) precomputed, e.g. for encryption
+   */
+  public PreparedPublicKey getPreparedKey() {
+    return mPubKey;
+  }
+
+  public int getCachedPrefixes() {
+    return mPrefixes.size();
+  }
+
+  /**
+   * @param copy copy the identities, for keys that are stored; lookups only wrap them
+   */
+  private static List<ByteBuffer> toKey(List<byte[]> ids, boolean copy) {
+    List<ByteBuffer> key = new ArrayList<>(ids.size());
+    for (byte[] id : ids) {
+      key.add(ByteBuffer.wrap(copy ? id.clone() : id));
+    }
+    return copy ? Collections.unmodifiableList(key) : key;
+  }
+}
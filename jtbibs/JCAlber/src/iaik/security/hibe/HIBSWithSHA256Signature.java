@@ -1,17 +1,30 @@
 package iaik.security.hibe;
 
 import Entities.DelegatedSecretKey;
+import Entities.IdentityHash;
+import Entities.IdentityPath;
 import Entities.PublicParams;
 import HIBE.Hibe;
 import iaik.security.ec.math.curve.ECPoint;
 import org.apache.log4j.Logger;
 
-import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.security.spec.AlgorithmParameterSpec;
 
+/**
+ * HIBS signature over the data, which is hashed to Z_p with the hash of the key's parameters as
+ * it is fed in, so the data is never buffered. For {@link IdentityHash.Version#EXPAND_XMD}
+ * parameters the data goes into expand_message_xmd with SHA-256 directly.
+ */
 public class HIBSWithSHA256Signature extends SignatureSpi {
 
+  /**
+   * Length of the digest {@link HIBSPrehashedSignature} is fed.
+   */
+  public static final int DIGEST_LENGTH = 32;
+
   private static Logger logger = Logger.getLogger(HIBSWithSHA256Signature.class);
 
   enum SignatureAction {
@@ -22,11 +35,25 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
   private SignatureAction mDoing;
 
   private PrivateKey mPrivateKey;
-  private ByteArrayOutputStream mData = new ByteArrayOutputStream();
+  private final MessageDigest mDigest;
+  private IdentityHash.Stream mStream;
   private PublicKey mPublicKey;
 
   private HIBSAlgorithmParameterSpec mSpec = new HIBSAlgorithmParameterSpec();
 
+  public HIBSWithSHA256Signature() {
+    this(null);
+  }
+
+  /**
+   * @param digest computes the {@link #DIGEST_LENGTH} bytes long digest of the fed data, which is
+   *               then mapped with {@link PublicParams#hashDigest}; <code>null</code> to hash the
+   *               data itself
+   */
+  protected HIBSWithSHA256Signature(MessageDigest digest) {
+    mDigest = digest;
+  }
+
   //TODO finish error handling
 
   //TODO are there Rules in which order this method has to be used respectively to the other
@@ -59,8 +86,9 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
   protected void engineInitSign(PrivateKey privateKey) throws InvalidKeyException {
     if (privateKey == null)
       throw new HIBSInvalidKeyException("Private key can not be null");
+    decodePoints(privateKey);
+    initHash(privateKey);
     mPrivateKey = privateKey;
-    mData.reset();
     mDoing = SignatureAction.SIGNING;
   }
 
@@ -68,7 +96,10 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
   protected void engineUpdate(byte b) throws SignatureException {
     if (mPrivateKey == null && mPublicKey == null)
       throw new HIBSSignaturException("Signature must be initialized first");
-    mData.write(b);
+    if (mDigest != null)
+      mDigest.update(b);
+    else
+      mStream.update(b);
   }
 
   @Override
@@ -79,7 +110,44 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
       throw new HIBSSignaturException("No input buffer given");
     if (input.length - offset < len)
       throw new HIBSSignaturException("Input buffer too short");
-    mData.write(input, offset, len);
+    if (mDigest != null)
+      mDigest.update(input, offset, len);
+    else
+      mStream.update(input, offset, len);
+  }
+
+  /**
+   * Hashes the remaining bytes of <code>input</code> without copying them into an array first.
+   */
+  @Override
+  protected void engineUpdate(ByteBuffer input) {
+    if (mPrivateKey == null && mPublicKey == null)
+      throw new ProviderException("Signature must be initialized first");
+    if (mDigest != null)
+      mDigest.update(input);
+    else
+      mStream.update(input);
+  }
+
+  /**
+   * Returns the scalar a message is signed as, <code>pp.hash(message)</code> without caching it.
+   */
+  static BigInteger hashMessage(PublicParams pp, byte[] message) {
+    IdentityHash.Stream stream = pp.newHashStream();
+    stream.update(message, 0, message.length);
+    return stream.digest();
+  }
+
+  /**
+   * Finishes the hash of the fed data, see {@link #hashMessage}, or maps the fed digest to Z_p.
+   */
+  private BigInteger messageHash(PublicParams pp) throws SignatureException {
+    if (mDigest == null)
+      return mStream.digest();
+    byte[] digest = mDigest.digest();
+    if (digest.length != DIGEST_LENGTH)
+      throw new HIBSSignaturException("Message digest must be " + DIGEST_LENGTH + " bytes long");
+    return pp.hashDigest(digest);
   }
 
   @Override
@@ -88,27 +156,40 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
       throw new HIBSSignaturException("Sign can not be called without initSign first");
     if (mPrivateKey == null)
       throw new HIBSSignaturException("Signature must be initialized first");
-    else if (mData == null)
-      throw new HIBSSignaturException("Signature must be fed data first");
 
-    Hibe hibe = new Hibe();
     DelegatedSecretKey ds;
     if (mPrivateKey instanceof HIBSPrivateKey) {
-      PublicParams pp = ((HIBSPrivateKey) mPrivateKey).getPP();
+      Hibe hibe = ((HIBSPrivateKey) mPrivateKey).getParams().getHibe();
+      PublicParams pp = ((HIBSPrivateKey) mPrivateKey).getParams().getSharedPP();
       if (mSpec.mIDs.size() > 0)
         throw new HIBSSignaturException("Number of IDs not matching delegation depth");
 
       ECPoint secK = ((HIBSPrivateKey) mPrivateKey).getP();
-      ds = hibe.delegation(pp, secK, mData.toByteArray());
+      BigInteger msgHash = messageHash(pp);
+      if (mSpec.mCompact)
+        return HIBSCompactSignature.encode(hibe.sign(pp, secK, msgHash), ((HIBSPrivateKey) mPrivateKey).getParams());
+      ds = hibe.delegation(pp, IdentityPath.EMPTY, secK, msgHash);
       return encode(ds, ((HIBSPrivateKey) mPrivateKey).getParams());
     } else if (mPrivateKey instanceof HIBSDelPrivKey) {
       DelegatedSecretKey delSecK = ((HIBSDelPrivKey) mPrivateKey).getDelSecK();
       if (mSpec.mIDs.size() != delSecK.depth)
         throw new HIBSSignaturException("Number of IDs not matching delegation depth");
 
-      PublicParams pp = ((HIBSDelPrivKey) mPrivateKey).getPP();
-      pp.ID.addAll(mSpec.mIDs);
-      ds = hibe.delegation(pp, delSecK, mData.toByteArray());
+      Hibe hibe = ((HIBSDelPrivKey) mPrivateKey).getParams().getHibe();
+      PublicParams pp = ((HIBSDelPrivKey) mPrivateKey).getParams().getSharedPP();
+      BigInteger msgHash = messageHash(pp);
+      if (mSpec.mCompact && mSpec.mPrecomputedNonces)
+        return HIBSCompactSignature.encode(HIBSNoncePool.forKey((HIBSDelPrivKey) mPrivateKey, mSpec.mIDs)
+            .sign(msgHash), ((HIBSDelPrivKey) mPrivateKey).getParams());
+      IdentityPath path = IdentityPath.of(pp, mSpec.mIDs);
+      if (mSpec.mCompact)
+        return HIBSCompactSignature.encode(hibe.sign(pp, path, delSecK, msgHash), ((HIBSDelPrivKey) mPrivateKey).getParams());
+      try {
+        ds = hibe.delegation(pp, path, delSecK, msgHash);
+      } catch (IllegalArgumentException e) {
+        // b_k+1 ... b_l are decoded here
+        throw new HIBSSignaturException("Invalid key: " + e.getMessage());
+      }
       return encode(ds, ((HIBSDelPrivKey) mPrivateKey).getParams());
     } else
       throw new HIBSSignaturException("Trying to sign with unsupported private key!");
@@ -116,7 +197,7 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
 
   @Deprecated
   public static HIBSDelPrivKey delegate(HIBSKeyPairParamSpec params, PrivateKey aPrivate, byte[] delData) {
-    Hibe hibe = new Hibe();
+    Hibe hibe = params.getHibe();
     PublicParams pp = ((HIBSPrivateKey) aPrivate).getPP(); //TODO distinguish between
     ECPoint secK = ((HIBSPrivateKey) aPrivate).getP();
     DelegatedSecretKey ds = hibe.delegation(pp, secK, delData);
@@ -128,11 +209,24 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
     return secK.getEncoded();
   }
 
-  private DelegatedSecretKey decode(byte[] sigBytes) throws SignatureException {
+  /**
+   * Decodes a full or compact signature created with a key delegated to <code>idCount</code> identities.
+   */
+  static DelegatedSecretKey decodeSignature(byte[] sigBytes, int idCount, HIBSKeyPairParamSpec params)
+      throws SignatureException {
+    if (HIBSCompactSignature.isCompact(sigBytes))
+      return HIBSCompactSignature.decode(sigBytes, idCount + 1, params);
+    return decode(sigBytes, params);
+  }
+
+  private static DelegatedSecretKey decode(byte[] sigBytes, HIBSKeyPairParamSpec params) throws SignatureException {
     try {
       HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(sigBytes);
+      if (delPrivKey.getParams().getCurve() != params.getCurve())
+        throw new HIBSSignaturException("Signature curve " + delPrivKey.getParams().getCurve()
+            + " does not match the key curve " + params.getCurve());
       return delPrivKey.getDelSecK();
-    } catch (InvalidKeyException e) {
+    } catch (InvalidKeyException | IllegalArgumentException e) {
       throw new HIBSSignaturException(e.getMessage());
     }
   }
@@ -141,12 +235,46 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
   protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
     if (publicKey == null)
       throw new HIBSInvalidKeyException("Public key can not be null");
+    decodePoints(publicKey);
+    initHash(publicKey);
 
     mPublicKey = publicKey;
-    mData.reset();
     mDoing = SignatureAction.VERIFYING;
   }
 
+  private void initHash(Key key) throws InvalidKeyException {
+    HIBSKeyPairParamSpec params;
+    if (key instanceof HIBSPrivateKey)
+      params = ((HIBSPrivateKey) key).getParams();
+    else if (key instanceof HIBSDelPrivKey)
+      params = ((HIBSDelPrivKey) key).getParams();
+    else if (key instanceof HIBSPublicKey)
+      params = ((HIBSPublicKey) key).getParams();
+    else
+      throw new HIBSInvalidKeyException("Unsupported key " + key.getClass().getName());
+    if (mDigest != null)
+      mDigest.reset();
+    else
+      mStream = params.getSharedPP().newHashStream();
+  }
+
+  /**
+   * Decodes the points of lazily decoded keys every signature or verification uses, so invalid
+   * keys are rejected here rather than when signing or verifying. b_k+1 ... b_l of delegated keys
+   * are only decoded when a signature delegates them.
+   */
+  private static void decodePoints(Key key) throws InvalidKeyException {
+    try {
+      if (key instanceof HIBSDelPrivKey) {
+        ((HIBSDelPrivKey) key).getDelSecK().get_b_k();
+      } else if (key instanceof HIBSPublicKey) {
+        ((HIBSPublicKey) key).getP();
+      }
+    } catch (IllegalArgumentException e) {
+      throw new HIBSInvalidKeyException("Invalid key: " + e.getMessage(), e);
+    }
+  }
+
   @Override
   protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
     if (!mDoing.equals(SignatureAction.VERIFYING))
@@ -155,23 +283,14 @@ public class HIBSWithSHA256Signature extends SignatureSpi {
       throw new HIBSSignaturException("Verify must be initialized first");
     if (sigBytes == null)
       throw new HIBSSignaturException("Can not verify signature of null"); //TODO check if necessary
-    DelegatedSecretKey dgs = decode(sigBytes);
+    HIBSKeyPairParamSpec params = ((HIBSPublicKey) mPublicKey).getParams();
+    BigInteger msgHash = messageHash(params.getSharedPP());
+    DelegatedSecretKey dgs = decodeSignature(sigBytes, mSpec.mIDs.size(), params);
     if (mSpec.mIDs.size() != dgs.depth - 1)
       throw new HIBSSignaturException("Not correct IDs feeded");
 
-    Hibe hibe = new Hibe();
-    ECPoint pk = ((HIBSPublicKey) mPublicKey).getP();
-    PublicParams pp = ((HIBSPublicKey) mPublicKey).getPP();
-    for (byte[] id : mSpec.mIDs) {
-      pp.addID(id);
-    }
-    pp.addID(mData.toByteArray());
-
-    if (pp.ID.size() != dgs.depth) {
-      throw new HIBSSignaturException("The delegation depth is not equal the amount of IDs");
-    }
-
-    return hibe.ntDeterVerify(pp, pk, dgs);
+    HIBSVerificationContext context = HIBSVerificationContext.forKey((HIBSPublicKey) mPublicKey);
+    return context.verify(mSpec.mIDs, msgHash, dgs);
 
 //    return hibe.ntDeterVerify(pp, pk, dgs);
 
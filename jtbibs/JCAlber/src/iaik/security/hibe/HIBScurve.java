@@ -1,8 +1,40 @@
 package iaik.security.hibe;
 
+import HIBE.Hibe;
+
 public enum HIBScurve {
-    BN_P256,
-    BN_P461,
-    BN_P638,
-    ISO_P512;
-  }// TODO encode it in keyparams, so that Sign.setParam does not need to specify
+    BN_P256(0),
+    BN_P461(1),
+    BN_P638(2),
+    ISO_P512(3);
+
+    /**
+     * Identifier written into the parameter encoding, must never change for a curve.
+     */
+    private final int mId;
+
+    HIBScurve(int id) {
+        mId = id;
+    }
+
+    int getId() {
+        return mId;
+    }
+
+    static HIBScurve fromId(int id) {
+        for (HIBScurve c : values()) {
+            if (c.mId == id) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown HIBE curve id " + id);
+    }
+
+    static HIBScurve fromEngineCurve(Hibe.Curve curve) {
+        return valueOf(curve.name());
+    }
+
+    Hibe.Curve toEngineCurve() {
+        return Hibe.Curve.valueOf(name());
+    }
+  }
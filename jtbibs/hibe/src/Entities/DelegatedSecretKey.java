@@ -2,6 +2,8 @@ package Entities;
 
 import iaik.security.ec.math.curve.ECPoint;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class DelegatedSecretKey {
@@ -11,6 +13,11 @@ public class DelegatedSecretKey {
   public final List<ECPoint> b;
   public int depth = 0;
 
+  /**
+   * g3 * h_1^H(I_1) * ... * h_depth^H(I_depth) together with the identities it was computed for
+   */
+  private volatile Precomp mPrecomp;
+
   /**
   params need to be cloned
    */
@@ -25,4 +32,59 @@ public class DelegatedSecretKey {
     return b.get(0);
   }
 
+  /**
+   * Returns the precomputed identity product of this key if it was computed for exactly
+   * the given identities, <code>null</code> otherwise. The point must not be modified.
+   */
+  public ECPoint getPrecomp(List<byte[]> ids) {
+    Precomp precomp = mPrecomp;
+    if (precomp != null && precomp.ids == ids) {
+      return precomp.product;
+    }
+    if (precomp == null || precomp.ids.size() != ids.size()) {
+      return null;
+    }
+    for (int i = 0; i < ids.size(); i++) {
+      if (!Arrays.equals(precomp.ids.get(i), ids.get(i))) {
+        return null;
+      }
+    }
+    return precomp.product;
+  }
+
+  /**
+   * Stores g3 * h_1^H(I_1) * ... * h_depth^H(I_depth) for the given identities.
+   */
+  public void setPrecomp(List<byte[]> ids, ECPoint product) {
+    List<byte[]> copy = new ArrayList<>(ids.size());
+    for (byte[] id : ids) {
+      copy.add(id.clone());
+    }
+    mPrecomp = new Precomp(copy, product);
+  }
+
+  /**
+   * Same as {@link #getPrecomp(List)} for the identities of <code>path</code>.
+   */
+  public ECPoint getPrecomp(IdentityPath path) {
+    return getPrecomp(path.getIDs());
+  }
+
+  /**
+   * Same as {@link #setPrecomp(List, ECPoint)}, the identities of the immutable path are not copied.
+   */
+  public void setPrecomp(IdentityPath path, ECPoint product) {
+    mPrecomp = new Precomp(path.getIDs(), product);
+  }
+
+  private static final class Precomp {
+    final List<byte[]> ids;
+    final ECPoint product;
+
+    Precomp(List<byte[]> ids, ECPoint product) {
+      this.ids = ids;
+      this.product = product;
+    }
+  }
+
 }
@@ -0,0 +1,74 @@
+package Entities;
+
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.math.BigInteger;
+
+/**
+ * Windowed fixed-base table for a point P that is multiplied by many scalars.
+ * <p>
+ * For window width w, entry [j][d - 1] holds d * 2^(w*j) * P, so k * P is a sum of
+ * one table entry per non-zero window of k and needs no doublings at all.
+ * The table is immutable once built and can be shared between threads.
+ * <p>
+ * The entries read and the number of additions depend on the scalar, so the table must only be
+ * used for public scalars such as identity hashes, never for keys or nonces, see
+ * {@link SecretFixedBaseTable}.
+ */
+public class FixedBaseTable {
+
+  private final ECPoint mBase;
+  private final int mWindow;
+  private final int mBitLength;
+  private final ECPoint[][] mTable;
+
+  /**
+   * @param base      the fixed point, not modified
+   * @param bitLength maximum bit length of the scalars, usually that of the group order
+   * @param window    window width in bits
+   */
+  public FixedBaseTable(ECPoint base, int bitLength, int window) {
+    if (window < 1 || window > 8) {
+      throw new IllegalArgumentException("Window width must be between 1 and 8");
+    }
+    mBase = base;
+    mWindow = window;
+    mBitLength = bitLength;
+
+    int windows = (bitLength + window - 1) / window;
+    int entries = (1 << window) - 1;
+    BigInteger shift = BigInteger.ONE.shiftLeft(window);
+    mTable = new ECPoint[windows][entries];
+
+    ECPoint p = base.clone();
+    for (int j = 0; j < windows; j++) {
+      mTable[j][0] = p;
+      for (int d = 1; d < entries; d++) {
+        mTable[j][d] = mTable[j][d - 1].clone().addPoint(p);
+      }
+      p = p.clone().multiplyPoint(shift);
+    }
+  }
+
+  /**
+   * Returns k * P as a new point.
+   */
+  public ECPoint multiply(BigInteger k) {
+    if (k.signum() < 0 || k.bitLength() > mBitLength) {
+      return mBase.clone().multiplyPoint(k);
+    }
+
+    ECPoint result = null;
+    for (int j = 0; j < mTable.length; j++) {
+      int digit = 0;
+      for (int i = mWindow - 1; i >= 0; i--) {
+        digit = (digit << 1) | (k.testBit(j * mWindow + i) ? 1 : 0);
+      }
+      if (digit != 0) {
+        ECPoint entry = mTable[j][digit - 1];
+        result = (result == null) ? entry.clone() : result.addPoint(entry);
+      }
+    }
+    return (result == null) ? mBase.getCurve().getNeutralPoint().clone() : result;
+  }
+}
@@ -0,0 +1,262 @@
+package Entities;
+
+import iaik.security.md.SHA256;
+import org.apache.log4j.Logger;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash of identities to Z_p as used by {@link PublicParams#hash}, in one of the {@link Version}s.
+ * <p>
+ * Identities up to {@link #MAX_CACHED_ID_LENGTH} bytes, like the domain and epoch levels, are
+ * kept in a bounded cache, so they are hashed once per process and not once per operation.
+ * Digests are kept per thread. There is one shared instance per order and version, see {@link #forOrder}.
+ */
+public class IdentityHash {
+  private static Logger logger = Logger.getLogger(IdentityHash.class);
+
+  /**
+   * Hash-to-Z_p constructions, the version of a parameter set is part of its encoding.
+   */
+  public enum Version {
+    /**
+     * SHA-256, re-hashed until the value is below p. Only covers 256 bits of larger orders.
+     */
+    REJECTION_SAMPLING(0),
+    /**
+     * expand_message_xmd with SHA-256 (RFC 9380, section 5.3.1) of the id to ceil((log2(p) + 128) / 8)
+     * bytes, reduced mod p. A fixed number of digests per order and a bias below 2^-128.
+     */
+    EXPAND_XMD(1);
+
+    private final int mId;
+
+    Version(int id) {
+      mId = id;
+    }
+
+    /**
+     * Identifier written into the parameter encoding, must never change for a version.
+     */
+    public int getId() {
+      return mId;
+    }
+
+    public static Version fromId(int id) {
+      for (Version v : values()) {
+        if (v.mId == id) {
+          return v;
+        }
+      }
+      throw new IllegalArgumentException("Unknown hash version " + id);
+    }
+  }
+
+  /**
+   * Longer identities (usually signed data) are hashed but not cached.
+   */
+  public static final int MAX_CACHED_ID_LENGTH = 128;
+
+  /**
+   * Number of identities cached per order.
+   */
+  public static final int CACHE_SIZE = 1024;
+
+  /**
+   * Domain separation tag of {@link Version#EXPAND_XMD}.
+   */
+  private static final byte[] XMD_DST = "TBIBS-V01-CS01-with-SHA256_XMD:HASH_TO_ZP_".getBytes(StandardCharsets.US_ASCII);
+
+  private static final int SHA256_BLOCK_LENGTH = 64;
+  private static final int SHA256_LENGTH = 32;
+  private static final byte[] Z_PAD = new byte[SHA256_BLOCK_LENGTH];
+
+  private static final Map<List<Object>, IdentityHash> sInstances = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<SHA256> sDigest = ThreadLocal.withInitial(SHA256::new);
+
+  private final BigInteger mOrder;
+  private final Version mVersion;
+  private final int mXmdLength;
+  private final LruCache<ByteBuffer, BigInteger> mCache = new LruCache<>(CACHE_SIZE);
+
+  /**
+   * Returns the shared {@link Version#REJECTION_SAMPLING} instance for the given order.
+   */
+  public static IdentityHash forOrder(BigInteger order) {
+    return forOrder(order, Version.REJECTION_SAMPLING);
+  }
+
+  /**
+   * Returns the shared instance for the given order and version.
+   */
+  public static IdentityHash forOrder(BigInteger order, Version version) {
+    return sInstances.computeIfAbsent(Arrays.asList(order, version), k -> new IdentityHash(order, version));
+  }
+
+  private IdentityHash(BigInteger order, Version version) {
+    mOrder = order;
+    mVersion = version;
+    mXmdLength = (order.bitLength() + 128 + 7) / 8;
+  }
+
+  public Version getVersion() {
+    return mVersion;
+  }
+
+  public BigInteger hash(byte[] id) {
+    if (id.length > MAX_CACHED_ID_LENGTH) {
+      return compute(id);
+    }
+    BigInteger h = mCache.get(ByteBuffer.wrap(id));
+    if (h == null) {
+      h = compute(id);
+      mCache.put(ByteBuffer.wrap(id.clone()), h);
+    }
+    return h;
+  }
+
+  public int getCachedIdentities() {
+    return mCache.size();
+  }
+
+  /**
+   * Returns a stream that hashes a message fed in parts, its digest equals <code>hash(msg)</code>.
+   */
+  public Stream newStream() {
+    return new Stream();
+  }
+
+  /**
+   * Maps the SHA-256 digest of a message to Z_p, for messages only known by their digest.
+   * For {@link Version#REJECTION_SAMPLING} <code>fromDigest(SHA256(msg))</code> equals
+   * <code>hash(msg)</code>. {@link Version#EXPAND_XMD} expands the digest itself, which gives a
+   * different value than <code>hash(msg)</code>.
+   */
+  public BigInteger fromDigest(byte[] digest) {
+    if (mVersion == Version.EXPAND_XMD)
+      return expandXmd(digest);
+    BigInteger h = new BigInteger(1, digest);
+    while (h.compareTo(mOrder) >= 0) {
+      if (logger.isDebugEnabled())
+        logger.debug("rehashing, #bits h: " + h.bitLength() + ", #bits p: " + mOrder.bitLength());
+      SHA256 sha = sDigest.get();
+      sha.reset();
+      digest = sha.digest(digest);
+      h = new BigInteger(1, digest);
+    }
+    return h;
+  }
+
+  private BigInteger compute(byte[] msg) {
+    if (mVersion == Version.EXPAND_XMD)
+      return expandXmd(msg);
+    SHA256 sha = sDigest.get();
+    sha.reset();
+    return fromDigest(sha.digest(msg));
+  }
+
+  /**
+   * expand_message_xmd(msg, DST, L) interpreted as big-endian integer mod p.
+   */
+  private BigInteger expandXmd(byte[] msg) {
+    return new BigInteger(1, expandMessageXmd(msg, XMD_DST, mXmdLength)).mod(mOrder);
+  }
+
+  /**
+   * expand_message_xmd with SHA-256 as in RFC 9380, section 5.3.1.
+   *
+   * @param dst    domain separation tag, at most 255 bytes
+   * @param length output length in bytes, at most 255 * 32
+   */
+  public static byte[] expandMessageXmd(byte[] msg, byte[] dst, int length) {
+    SHA256 sha = sDigest.get();
+    sha.reset();
+    sha.update(Z_PAD);
+    sha.update(msg);
+    return finishXmd(sha, dst, length);
+  }
+
+  /**
+   * Finishes expand_message_xmd after Z_pad and the message were fed to <code>sha</code>.
+   */
+  private static byte[] finishXmd(SHA256 sha, byte[] dst, int length) {
+    int ell = (length + SHA256_LENGTH - 1) / SHA256_LENGTH;
+
+    // b_0 = H(Z_pad || msg || I2OSP(L, 2) || I2OSP(0, 1) || DST_prime)
+    sha.update((byte) (length >>> 8));
+    sha.update((byte) length);
+    sha.update((byte) 0);
+    updateDstPrime(sha, dst);
+    byte[] b0 = sha.digest();
+
+    // b_i = H(strxor(b_0, b_i-1) || I2OSP(i, 1) || DST_prime), b_1 = H(b_0 || I2OSP(1, 1) || DST_prime)
+    byte[] uniform = new byte[ell * SHA256_LENGTH];
+    byte[] chain = new byte[SHA256_LENGTH];
+    for (int i = 1; i <= ell; i++) {
+      for (int j = 0; j < SHA256_LENGTH; j++) {
+        chain[j] ^= b0[j];
+      }
+      sha.reset();
+      sha.update(chain);
+      sha.update((byte) i);
+      updateDstPrime(sha, dst);
+      chain = sha.digest();
+      System.arraycopy(chain, 0, uniform, (i - 1) * SHA256_LENGTH, SHA256_LENGTH);
+    }
+    return Arrays.copyOf(uniform, length);
+  }
+
+  private static void updateDstPrime(SHA256 sha, byte[] dst) {
+    sha.update(dst);
+    sha.update((byte) dst.length);
+  }
+
+  /**
+   * Hash of a message fed in parts, in the version of the instance. Not thread-safe.
+   */
+  public final class Stream {
+    private final SHA256 mSha = new SHA256();
+
+    private Stream() {
+      reset();
+    }
+
+    public void update(byte b) {
+      mSha.update(b);
+    }
+
+    public void update(byte[] input, int offset, int len) {
+      mSha.update(input, offset, len);
+    }
+
+    public void update(ByteBuffer input) {
+      mSha.update(input);
+    }
+
+    /**
+     * Finishes the hash of the fed message and resets the stream.
+     */
+    public BigInteger digest() {
+      BigInteger h;
+      if (mVersion == Version.EXPAND_XMD)
+        h = new BigInteger(1, finishXmd(mSha, XMD_DST, mXmdLength)).mod(mOrder);
+      else
+        h = fromDigest(mSha.digest());
+      reset();
+      return h;
+    }
+
+    public void reset() {
+      mSha.reset();
+      if (mVersion == Version.EXPAND_XMD)
+        mSha.update(Z_PAD);
+    }
+  }
+}
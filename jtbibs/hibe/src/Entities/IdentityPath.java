@@ -0,0 +1,108 @@
+package Entities;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable path of identities I_1, ..., I_k together with their hashes H(I_1), ..., H(I_k).
+ * <p>
+ * Passed to the engine instead of growing {@link PublicParams#ID}, so public parameters stay
+ * unchanged during sign and verify and can be shared between threads. The identities are copied
+ * on creation; arrays returned by {@link #get} must not be modified.
+ */
+public final class IdentityPath {
+
+  public static final IdentityPath EMPTY = new IdentityPath(Collections.emptyList(), new BigInteger[0]);
+
+  private final List<byte[]> mIDs;
+  private final BigInteger[] mHashes;
+
+  private IdentityPath(List<byte[]> ids, BigInteger[] hashes) {
+    mIDs = ids;
+    mHashes = hashes;
+  }
+
+  /**
+   * Creates the path of the given identities, hashed for the order of <code>pp</code>.
+   */
+  public static IdentityPath of(PublicParams pp, List<byte[]> ids) {
+    if (ids.isEmpty())
+      return EMPTY;
+    List<byte[]> copy = new ArrayList<>(ids.size());
+    BigInteger[] hashes = new BigInteger[ids.size()];
+    for (int i = 0; i < ids.size(); i++) {
+      copy.add(ids.get(i).clone());
+      hashes[i] = pp.hash(ids.get(i));
+    }
+    return new IdentityPath(Collections.unmodifiableList(copy), hashes);
+  }
+
+  public static IdentityPath of(PublicParams pp, byte[]... ids) {
+    return of(pp, Arrays.asList(ids));
+  }
+
+  /**
+   * @return this path extended by <code>id</code>
+   */
+  public IdentityPath append(PublicParams pp, byte[] id) {
+    List<byte[]> ids = new ArrayList<>(mIDs.size() + 1);
+    ids.addAll(mIDs);
+    ids.add(id.clone());
+    BigInteger[] hashes = Arrays.copyOf(mHashes, mHashes.length + 1);
+    hashes[mHashes.length] = pp.hash(id);
+    return new IdentityPath(Collections.unmodifiableList(ids), hashes);
+  }
+
+  public int size() {
+    return mIDs.size();
+  }
+
+  /**
+   * @return I_level+1, must not be modified
+   */
+  public byte[] get(int level) {
+    return mIDs.get(level);
+  }
+
+  /**
+   * @return H(I_level+1)
+   */
+  public BigInteger hash(int level) {
+    return mHashes[level];
+  }
+
+  /**
+   * @return the identities, must not be modified
+   */
+  public List<byte[]> getIDs() {
+    return mIDs;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (!(o instanceof IdentityPath))
+      return false;
+    IdentityPath other = (IdentityPath) o;
+    if (other.size() != size())
+      return false;
+    for (int i = 0; i < size(); i++) {
+      if (!Arrays.equals(mIDs.get(i), other.mIDs.get(i)))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (byte[] id : mIDs) {
+      result = 31 * result + Arrays.hashCode(id);
+    }
+    return result;
+  }
+}
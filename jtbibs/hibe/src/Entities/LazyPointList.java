@@ -0,0 +1,52 @@
+package Entities;
+
+import iaik.security.ec.errorhandling.DecodingException;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.ec.math.curve.EllipticCurve;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unmodifiable list of encoded points, each point is decoded when it is first accessed.
+ * A point that does not decode throws an {@link IllegalArgumentException} on access.
+ */
+public class LazyPointList extends AbstractList<ECPoint> {
+
+  private final EllipticCurve mCurve;
+  private final List<byte[]> mEncoded;
+  private final AtomicReferenceArray<ECPoint> mPoints;
+
+  /**
+   * @param encoded point encodings, not copied
+   */
+  public LazyPointList(EllipticCurve curve, List<byte[]> encoded) {
+    mCurve = curve;
+    mEncoded = encoded;
+    mPoints = new AtomicReferenceArray<>(encoded.size());
+  }
+
+  @Override
+  public ECPoint get(int index) {
+    ECPoint point = mPoints.get(index);
+    if (point == null) {
+      point = decode(mCurve, mEncoded.get(index));
+      mPoints.set(index, point);
+    }
+    return point;
+  }
+
+  @Override
+  public int size() {
+    return mEncoded.size();
+  }
+
+  public static ECPoint decode(EllipticCurve curve, byte[] encoded) {
+    try {
+      return curve.decodePoint(encoded);
+    } catch (DecodingException e) {
+      throw new IllegalArgumentException("Point not decodable: " + e.getMessage(), e);
+    }
+  }
+}
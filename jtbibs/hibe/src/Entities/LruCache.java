@@ -0,0 +1,51 @@
+package Entities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small bounded cache which evicts the least recently used entry once full.
+ * All methods are synchronized, so one instance can be shared between threads.
+ */
+public class LruCache<K, V> {
+
+  private final int mCapacity;
+  private final Map<K, V> mMap;
+
+  public LruCache(final int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Cache capacity must be positive");
+    }
+    mCapacity = capacity;
+    mMap = new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > mCapacity;
+      }
+    };
+  }
+
+  public synchronized V get(K key) {
+    return mMap.get(key);
+  }
+
+  public synchronized void put(K key, V value) {
+    mMap.put(key, value);
+  }
+
+  public synchronized void remove(K key) {
+    mMap.remove(key);
+  }
+
+  public synchronized void clear() {
+    mMap.clear();
+  }
+
+  public synchronized int size() {
+    return mMap.size();
+  }
+
+  public int getCapacity() {
+    return mCapacity;
+  }
+}
@@ -5,10 +5,16 @@ import iaik.security.ec.math.curve.EllipticCurve;
 import iaik.security.ec.math.field.*;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.Random;
 
 public class MyUtils {
 
+  /**
+   * Domain separation tag of {@link #hashToPoint}.
+   */
+  private static final byte[] GENERATOR_DST = "TBIBS-V01-CS01-with-SHA256_XMD:GENERATORS_".getBytes(StandardCharsets.US_ASCII);
+
   public static ECPoint rejectionSampling(EllipticCurve G) {
     AbstractPrimeField field = (AbstractPrimeField) G.getField();
     ECPoint g2 = null;
@@ -19,6 +25,31 @@ public class MyUtils {
     return g2;
   }
 
+  /**
+   * Derives a point of unknown discrete logarithm from <code>seed</code> and <code>label</code> by
+   * try-and-increment: x = expand_message_xmd(seed || "TBIBS|" || label || "|" || counter), truncated below
+   * 2^(field size - 1), for counter = 0, 1, ... until x is on the curve. The same inputs always give the same point.
+   */
+  public static ECPoint hashToPoint(final EllipticCurve curve, final byte[] seed, final String label) {
+    final Field field = (Field) curve.getField();
+    final int bits = field.getFieldSize() - 1;
+    final byte[] prefix = ("TBIBS|" + label + "|").getBytes(StandardCharsets.US_ASCII);
+    final byte[] msg = new byte[seed.length + prefix.length + 1];
+    System.arraycopy(seed, 0, msg, 0, seed.length);
+    System.arraycopy(prefix, 0, msg, seed.length, prefix.length);
+
+    for (int counter = 0; counter < 256; counter++) {
+      msg[msg.length - 1] = (byte) counter;
+      byte[] uniform = IdentityHash.expandMessageXmd(msg, GENERATOR_DST, (bits + 7) / 8);
+      BigInteger x = new BigInteger(1, uniform).shiftRight(uniform.length * 8 - bits);
+      ECPoint p = curve.getPoint(field.newElement(x));
+      if (p != null) {
+        return p;
+      }
+    }
+    throw new IllegalStateException("No point found for label " + label);
+  }
+
   public static ECPoint getPoint(final EllipticCurve curve, final Random random) {
     ECPoint p;
     final Field field = (Field) curve.getField();
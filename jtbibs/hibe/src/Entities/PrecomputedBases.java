@@ -0,0 +1,102 @@
+package Entities;
+
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bases of a parameter set, g_head in G2 and g2, g3 and the h_i in G1, with fixed-base tables
+ * for all of them. Each table is built on first use and then shared by all copies of the
+ * parameters the instance is handed to.
+ * <p>
+ * The identity hashes in {@link #h} are public and use a {@link FixedBaseTable}. Secret scalars
+ * (keys, delegation randomness, nonces, encryption exponents) use a {@link SecretFixedBaseTable},
+ * whose additions and memory accesses do not depend on the scalar.
+ */
+public class PrecomputedBases {
+
+  /**
+   * Window width of the tables, 2^4 - 1 points per window.
+   */
+  public static final int WINDOW = 4;
+
+  private static final int G_HEAD = 0;
+  private static final int G2 = 1;
+  private static final int G3 = 2;
+  private static final int H = 3;
+
+  private final ECPoint[] mBases;
+  private final int mBitLength;
+  private final AtomicReferenceArray<FixedBaseTable> mTables; // of the h_i
+  private final AtomicReferenceArray<SecretFixedBaseTable> mSecretTables; // of all bases
+
+  public PrecomputedBases(BigInteger order, ECPoint g_head, ECPoint g2, ECPoint g3, List<ECPoint> h) {
+    int levels = (h == null) ? 0 : h.size();
+    mBases = new ECPoint[H + levels];
+    mBases[G_HEAD] = g_head;
+    mBases[G2] = g2;
+    mBases[G3] = g3;
+    for (int i = 0; i < levels; i++) {
+      mBases[H + i] = h.get(i);
+    }
+    mBitLength = order.bitLength();
+    mTables = new AtomicReferenceArray<>(levels);
+    mSecretTables = new AtomicReferenceArray<>(mBases.length);
+  }
+
+  /**
+   * @return g_head^k for a secret k
+   */
+  public ECPoint gHead(BigInteger k) {
+    return secretTable(G_HEAD).multiply(k);
+  }
+
+  /**
+   * @return g2^k for a secret k
+   */
+  public ECPoint g2(BigInteger k) {
+    return secretTable(G2).multiply(k);
+  }
+
+  /**
+   * @return g3^k for a secret k
+   */
+  public ECPoint g3(BigInteger k) {
+    return secretTable(G3).multiply(k);
+  }
+
+  /**
+   * @return h_(level+1)^idHash through the fixed-base table, <code>idHash</code> must be public
+   */
+  public ECPoint h(int level, BigInteger idHash) {
+    return table(level).multiply(idHash);
+  }
+
+  /**
+   * @return h_(level+1)^k for a secret k
+   */
+  public ECPoint hSecret(int level, BigInteger k) {
+    return secretTable(H + level).multiply(k);
+  }
+
+  private FixedBaseTable table(int level) {
+    FixedBaseTable table = mTables.get(level);
+    if (table == null) {
+      // concurrent first uses may both build the table, only one is kept
+      mTables.compareAndSet(level, null, new FixedBaseTable(mBases[H + level], mBitLength, WINDOW));
+      table = mTables.get(level);
+    }
+    return table;
+  }
+
+  private SecretFixedBaseTable secretTable(int base) {
+    SecretFixedBaseTable table = mSecretTables.get(base);
+    if (table == null) {
+      mSecretTables.compareAndSet(base, null, new SecretFixedBaseTable(mBases[base], mBitLength, WINDOW));
+      table = mSecretTables.get(base);
+    }
+    return table;
+  }
+}
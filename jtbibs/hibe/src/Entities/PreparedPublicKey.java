@@ -0,0 +1,42 @@
+package Entities;
+
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.ec.math.field.ExtensionFieldElement;
+
+import java.math.BigInteger;
+
+/**
+ * A public key together with the constant pairing e(g2, pk).
+ * <p>
+ * Verification multiplies the cached value into a pairing product of the remaining two
+ * pairs, encryption raises it to the random exponent. Instances are safe to be shared
+ * between threads.
+ */
+public class PreparedPublicKey {
+
+  public final ECPoint pubKey;
+  private final ExtensionFieldElement mPairing;
+
+  /**
+   * @param pubKey  the public key g_head^alpha
+   * @param pairing e(g2, pubKey)
+   */
+  public PreparedPublicKey(ECPoint pubKey, ExtensionFieldElement pairing) {
+    this.pubKey = pubKey;
+    mPairing = pairing;
+  }
+
+  /**
+   * @return e(g2, pk), must not be modified
+   */
+  public ExtensionFieldElement getPairing() {
+    return mPairing;
+  }
+
+  /**
+   * @return e(g2, pk)^k as a new element, k may be secret
+   */
+  public ExtensionFieldElement exponentiate(BigInteger k) {
+    return ((ExtensionFieldElement) mPairing.clone()).exponentiate(k);
+  }
+}
@@ -4,11 +4,11 @@ import iaik.security.ec.math.curve.ECPoint;
 import iaik.security.ec.math.curve.EllipticCurve;
 import iaik.security.ec.math.field.ExtensionField;
 //import iaik.security.hibe.HibeParameterSpec;
-import iaik.security.md.SHA256;
 import org.apache.log4j.Logger;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class PublicParams implements IPublicParams {
@@ -26,9 +26,34 @@ public class PublicParams implements IPublicParams {
   public final List<ECPoint> h;
   public int max_hibe_height;
   public final List<byte[]> ID;
+  public final PrecomputedBases bases;
+  private final IdentityHash mHash;
 
   public PublicParams(BigInteger p, EllipticCurve G1, EllipticCurve G2, ExtensionField GT, ECPoint g, ECPoint g_head,
                       ECPoint g2, ECPoint g3, List<ECPoint> h, int max_hibe_height) {
+    this(p, G1, G2, GT, g, g_head, g2, g3, h, max_hibe_height, new PrecomputedBases(p, g_head, g2, g3, h));
+  }
+
+  /**
+   * @param bases fixed-base tables for g_head, g2, g3 and h, may be shared between copies of the same parameters
+   */
+  public PublicParams(BigInteger p, EllipticCurve G1, EllipticCurve G2, ExtensionField GT, ECPoint g, ECPoint g_head,
+                      ECPoint g2, ECPoint g3, List<ECPoint> h, int max_hibe_height, PrecomputedBases bases) {
+    this(p, G1, G2, GT, g, g_head, g2, g3, h, max_hibe_height, bases, IdentityHash.Version.REJECTION_SAMPLING);
+  }
+
+  /**
+   * @param hashVersion construction used by {@link #hash}, fixed for keys and signatures of these parameters
+   */
+  public PublicParams(BigInteger p, EllipticCurve G1, EllipticCurve G2, ExtensionField GT, ECPoint g, ECPoint g_head,
+                      ECPoint g2, ECPoint g3, List<ECPoint> h, int max_hibe_height, PrecomputedBases bases,
+                      IdentityHash.Version hashVersion) {
+    this(p, G1, G2, GT, g, g_head, g2, g3, h, max_hibe_height, bases, hashVersion, new ArrayList<>());
+  }
+
+  private PublicParams(BigInteger p, EllipticCurve G1, EllipticCurve G2, ExtensionField GT, ECPoint g, ECPoint g_head,
+                       ECPoint g2, ECPoint g3, List<ECPoint> h, int max_hibe_height, PrecomputedBases bases,
+                       IdentityHash.Version hashVersion, List<byte[]> ID) {
     this.p = p;
     this.G1 = G1;
     this.G2 = G2;
@@ -39,31 +64,50 @@ public class PublicParams implements IPublicParams {
     this.g3 = g3;
     this.h = h;
     this.max_hibe_height = max_hibe_height;
-    this.ID = new ArrayList<>();
+    this.ID = ID;
+    this.bases = bases;
+    this.mHash = IdentityHash.forOrder(p, hashVersion);
   }
 
   /**
-   * Rejection sampling for length(p) == 256
+   * Hash to Z_p in the version of these parameters, cached for short identities, see {@link IdentityHash}
    *
    * @param msg
-   * @return 256 bits long integer
+   * @return integer below p
    */
   @Override
   public BigInteger hash(byte[] msg) {
-    SHA256 sha = new SHA256();
-    byte[] h = sha.digest(msg);
-    logger.debug("#bits p: " + p.bitLength());
-    logger.debug("#bits h: " + new BigInteger(1, h).bitLength());
-    while (new BigInteger(1, h).compareTo(this.p) >= 0) {
-      logger.debug("rehashing");
-      sha.reset();
-      h = sha.digest(h);
-      logger.debug("#bits h: " + new BigInteger(1, h).bitLength());
-    }
-    return new BigInteger(1, h);
+    return mHash.hash(msg);
+  }
+
+  /**
+   * Hash to Z_p of a message of which only the SHA-256 digest is known, see {@link IdentityHash#fromDigest}.
+   */
+  public BigInteger hashDigest(byte[] digest) {
+    return mHash.fromDigest(digest);
+  }
+
+  /**
+   * Hash to Z_p of a message fed in parts, equal to {@link #hash} of the whole message but not cached.
+   */
+  public IdentityHash.Stream newHashStream() {
+    return mHash.newStream();
   }
 
   public void addID(byte[] id) {
     this.ID.add(id);
   }
+
+  /**
+   * Returns a copy without identities that can be shared between threads. Its ID list can not be
+   * modified, so it only works with the {@link IdentityPath} methods of the engine.
+   */
+  public PublicParams shared() {
+    return new PublicParams(p, G1, G2, GT, g, g_head, g2, g3, h, max_hibe_height, bases, getHashVersion(),
+        Collections.emptyList());
+  }
+
+  public IdentityHash.Version getHashVersion() {
+    return mHash.getVersion();
+  }
 }
@@ -0,0 +1,135 @@
+package Entities;
+
+import iaik.security.ec.errorhandling.DecodingException;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.ec.math.curve.EllipticCurve;
+
+import java.math.BigInteger;
+
+/**
+ * Fixed-base table for a point P that is multiplied by secret scalars.
+ * <p>
+ * For window width w, entry [j][d] holds (d + 1) * 2^(w*j) * P, so every window of k adds exactly
+ * one entry, also for zero digits, and the surplus sum of 2^(w*j) * P is subtracted up front.
+ * The entries are kept as uncompressed encodings and each lookup reads the whole window with a
+ * mask, so neither the additions nor the memory accessed depend on k. Unlike
+ * {@link FixedBaseTable} the table can be used for keys and nonces.
+ */
+public class SecretFixedBaseTable {
+
+  private final ECPoint mBase;
+  private final EllipticCurve mCurve;
+  private final int mWindow;
+  private final int mBitLength;
+  private final int mEncodedLength;
+  private final int mWords; // longs per entry
+  private final long[][] mTable;
+  private final ECPoint mOffset;
+
+  /**
+   * @param base      the fixed point, not modified
+   * @param bitLength maximum bit length of the scalars, usually that of the group order
+   * @param window    window width in bits
+   */
+  public SecretFixedBaseTable(ECPoint base, int bitLength, int window) {
+    if (window < 1 || window > 8) {
+      throw new IllegalArgumentException("Window width must be between 1 and 8");
+    }
+    mBase = base;
+    mCurve = base.getCurve();
+    mWindow = window;
+    mBitLength = bitLength;
+
+    int windows = (bitLength + window - 1) / window;
+    int entries = 1 << window;
+    BigInteger shift = BigInteger.ONE.shiftLeft(window);
+    mEncodedLength = base.encodePoint().length;
+    mWords = (mEncodedLength + 7) / 8;
+    mTable = new long[windows][entries * mWords];
+
+    ECPoint p = base.clone();
+    ECPoint sum = null;
+    for (int j = 0; j < windows; j++) {
+      ECPoint entry = p.clone();
+      for (int d = 0; d < entries; d++) {
+        pack(entry.encodePoint(), mTable[j], d * mWords);
+        if (d + 1 < entries) {
+          entry.addPoint(p);
+        }
+      }
+      sum = (sum == null) ? p.clone() : sum.addPoint(p);
+      p = p.clone().multiplyPoint(shift);
+    }
+    mOffset = sum.negatePoint();
+  }
+
+  /**
+   * Returns k * P as a new point.
+   */
+  public ECPoint multiply(BigInteger k) {
+    if (k.signum() < 0 || k.bitLength() > mBitLength) {
+      return mBase.clone().multiplyPoint(k);
+    }
+
+    byte[] scalar = toLittleEndian(k, (mTable.length * mWindow + 7) / 8 + 1);
+    long[] selected = new long[mWords];
+    byte[] encoded = new byte[mEncodedLength];
+    ECPoint result = mOffset.clone();
+    for (int j = 0; j < mTable.length; j++) {
+      select(mTable[j], digit(scalar, j), selected);
+      unpack(selected, encoded);
+      result.addPoint(decode(encoded));
+    }
+    return result;
+  }
+
+  private int digit(byte[] scalar, int j) {
+    int bit = j * mWindow;
+    int bits = (scalar[bit >>> 3] & 0xff) | ((scalar[(bit >>> 3) + 1] & 0xff) << 8);
+    return (bits >>> (bit & 7)) & ((1 << mWindow) - 1);
+  }
+
+  private void select(long[] window, int digit, long[] out) {
+    for (int w = 0; w < mWords; w++) {
+      out[w] = 0;
+    }
+    int entries = 1 << mWindow;
+    for (int d = 0; d < entries; d++) {
+      // all ones for d == digit, else zero
+      long mask = ((d ^ digit) - 1) >> 31;
+      int offset = d * mWords;
+      for (int w = 0; w < mWords; w++) {
+        out[w] |= window[offset + w] & mask;
+      }
+    }
+  }
+
+  private ECPoint decode(byte[] encoded) {
+    try {
+      return mCurve.decodePoint(encoded);
+    } catch (DecodingException e) {
+      throw new IllegalStateException("Table entry not decodable: " + e.getMessage(), e);
+    }
+  }
+
+  private static byte[] toLittleEndian(BigInteger k, int length) {
+    byte[] big = k.toByteArray();
+    byte[] little = new byte[length];
+    for (int i = 0; i < big.length && i < length; i++) {
+      little[i] = big[big.length - 1 - i];
+    }
+    return little;
+  }
+
+  private static void pack(byte[] encoded, long[] table, int offset) {
+    for (int i = 0; i < encoded.length; i++) {
+      table[offset + (i >>> 3)] |= (encoded[i] & 0xffL) << ((i & 7) << 3);
+    }
+  }
+
+  private static void unpack(long[] words, byte[] encoded) {
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+    }
+  }
+}
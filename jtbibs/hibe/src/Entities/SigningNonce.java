@@ -0,0 +1,26 @@
+package Entities;
+
+import iaik.security.ec.math.curve.ECPoint;
+
+/**
+ * Message independent part of a leaf signature below a delegated key of depth k, for a random w:
+ * <ul>
+ * <li>a0 = a_0 * (g_3 * h_1^H(I_1) * ... * h_k^H(I_k))^w</li>
+ * <li>a1 = a_1 * g_head^w</li>
+ * <li>c = b_k+1 * h_k+1^w</li>
+ * </ul>
+ * The signature on m is then (a0 * c^H(m), a1). A nonce must only be used for one signature.
+ */
+public class SigningNonce {
+  public final ECPoint a0;
+  public final ECPoint a1;
+  public final ECPoint c;
+  public final int depth;
+
+  public SigningNonce(ECPoint a0, ECPoint a1, ECPoint c, int depth) {
+    this.a0 = a0;
+    this.a1 = a1;
+    this.c = c;
+    this.depth = depth;
+  }
+}
@@ -10,7 +10,10 @@ import org.apache.log4j.Logger;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class Hibe implements IHIBE {
@@ -23,25 +26,64 @@ public class Hibe implements IHIBE {
     ISO_P512
   }
 
+  /**
+   * Default curve for parameter sets that do not name a curve themselves. Parameters,
+   * keys and signatures carry their own curve, this is only used for new parameters
+   * and for encodings from before the curve was encoded.
+   */
   public static Curve sCurve = Curve.BN_P256;
 
+  /**
+   * One engine per curve, created on first use and shared afterwards.
+   */
+  private static final Map<Curve, Hibe> sEngines = new ConcurrentHashMap<>();
+
+  private final Curve mCurve;
+
   private final int mFieldSize;
 
   private final Pairing mPairing;
 
   private final SecureRandom mRandom;
 
+  /**
+   * Returns the shared engine for the currently selected curve {@link #sCurve}.
+   */
+  public static Hibe getInstance() {
+    return getInstance(sCurve);
+  }
+
+  /**
+   * Returns the shared engine for the given curve. The engine is immutable and
+   * safe to be used by several threads at once, so the pairing lookup and the
+   * seeding of the random generator happen only once per curve and process.
+   *
+   * @param curve the curve the engine works on
+   * @return the engine for the curve
+   */
+  public static Hibe getInstance(Curve curve) {
+    if (curve == null) {
+      throw new NullPointerException("Curve can not be null");
+    }
+    return sEngines.computeIfAbsent(curve, Hibe::new);
+  }
+
   public Hibe() {
-    System.out.println("HIBE Bits of Security: " + sCurve);
-      if (sCurve.equals(Curve.BN_P461)) {
+    this(sCurve);
+  }
+
+  public Hibe(Curve curve) {
+    logger.info("HIBE Bits of Security: " + curve);
+    mCurve = curve;
+      if (curve.equals(Curve.BN_P461)) {
         mFieldSize = 461;
         mPairing = AtePairingOverBarretoNaehrigCurveFactory
             .getPairing(PairingTypes.TYPE_3, 461);
-      } else if (sCurve.equals(Curve.BN_P638)) {
+      } else if (curve.equals(Curve.BN_P638)) {
         mFieldSize = 638;
         mPairing = AtePairingOverBarretoNaehrigCurveFactory
             .getPairing(PairingTypes.TYPE_3, "BN_P638");
-      } else if (sCurve.equals(Curve.ISO_P512)) {
+      } else if (curve.equals(Curve.ISO_P512)) {
         mFieldSize = 512;
         mPairing = AtePairingOverBarretoNaehrigCurveFactory
             .getPairing(PairingTypes.TYPE_3,"ISO_P512");
@@ -77,103 +119,277 @@ public class Hibe implements IHIBE {
     return new PublicParams(p, G1, G2, GT, g, g_head, g2, g3, h, max_hibe_height);
   }
 
+  /**
+   * Same as {@link #setUp(int, SecurityParams)} with g2, g3 and h_1 ... h_l derived from <code>seed</code>
+   * (labels "g_2", "g_3" and "h_1" ... "h_l", see {@link MyUtils#hashToPoint}), so the parameters can be
+   * regenerated from the curve, the seed and the height alone.
+   */
+  public PublicParams setUp(int max_hibe_height, byte[] seed) {
+    EllipticCurve G1 = mPairing.getGroup1();
+    ECPoint g2 = MyUtils.hashToPoint(G1, seed, "g_2");
+    ECPoint g3 = MyUtils.hashToPoint(G1, seed, "g_3");
+    List<ECPoint> h = new ArrayList<>();
+    for (int i = 0; i < max_hibe_height; i++) {
+      h.add(MyUtils.hashToPoint(G1, seed, "h_" + (i + 1)));
+    }
+    return new PublicParams(G1.getOrder(), G1, mPairing.getGroup2(), mPairing.getTargetGroup(), G1.getGenerator(),
+        mPairing.getGroup2().getGenerator(), g2, g3, h, max_hibe_height);
+  }
+
 
   @Override
   public MasterKeyPair keyGen(PublicParams pp) {
     final BigInteger alpha = new BigInteger(pp.p.bitLength() - 1, mRandom);
 
     //g_head^alpha, g_2^alpha
-    return new MasterKeyPair(pp.g_head.multiplyPoint(alpha), pp.g2.multiplyPoint(alpha));
+    return new MasterKeyPair(pp.bases.gHead(alpha), pp.bases.g2(alpha));
   }
 
   @Override
   public DelegatedSecretKey delegation(PublicParams pp, ECPoint master_sec_key, byte[] id) {
+    pp.addID(id);
+    return delegation(pp, master_sec_key, pp.hash(id), id, false);
+  }
+
+  /**
+   * Delegates the master key to <code>id</code>. Unlike {@link #delegation(PublicParams, ECPoint, byte[])}
+   * <code>pp</code> is not modified.
+   *
+   * @param path identities of the signing key, always empty for the master key
+   */
+  public DelegatedSecretKey delegation(PublicParams pp, IdentityPath path, ECPoint master_sec_key, byte[] id) {
+    if (path.size() != 0)
+      throw new IllegalArgumentException("The master key has no identities");
+    return delegation(pp, master_sec_key, pp.hash(id), id, false);
+  }
+
+  /**
+   * Delegates the master key to an identity given by its hash, e.g. a message digested in a stream.
+   * The result keeps no identity product, it is meant as signature.
+   */
+  public DelegatedSecretKey delegation(PublicParams pp, IdentityPath path, ECPoint master_sec_key, BigInteger idHash) {
+    if (path.size() != 0)
+      throw new IllegalArgumentException("The master key has no identities");
+    return delegation(pp, master_sec_key, idHash, null, false);
+  }
+
+  /**
+   * Signs <code>msg</code> as leaf below the master key. Only a_0 and a_1 are computed,
+   * the b components are not needed for verification, so the result can not be delegated.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, ECPoint master_sec_key, byte[] msg) {
+    return delegation(pp, master_sec_key, pp.hash(msg), null, true);
+  }
+
+  /**
+   * Same as {@link #sign(PublicParams, ECPoint, byte[])} with the hash of the message already computed.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, ECPoint master_sec_key, BigInteger msgHash) {
+    return delegation(pp, master_sec_key, msgHash, null, true);
+  }
+
+  /**
+   * @param id identity the key is delegated to, <code>null</code> if no identity product is kept in the result
+   */
+  private DelegatedSecretKey delegation(PublicParams pp, ECPoint master_sec_key, BigInteger hash_1, byte[] id,
+                                        boolean leaf) {
     logger.debug("first delegation");
     int depth = 0;
     assert pp.max_hibe_height > depth : "Further delegations are not allowed";
-    pp.addID(id);
-    assert pp.ID.size() - 1 == depth;
     final BigInteger v = new BigInteger(pp.p.bitLength() - 1, mRandom);
 
     // Part 1
     //h_1^H(I_1)...h_k^H(I_k)
-    ECPoint hibeProduct = pp.h.get(depth).clone().multiplyPoint(pp.hash(pp.ID.get(depth))); // cuz k = 0
+    ECPoint hibeProduct = pp.bases.h(depth, hash_1); // cuz k = 0
+
+    //hibeProduct * g_3, kept in the new key
+    ECPoint precomp = hibeProduct.addPoint(pp.g3);
 
-    //(hibeProduct * g_3)^v
-    ECPoint inner = hibeProduct.clone().addPoint(pp.g3)
+    //(hibeProduct * g_3)^v, a leaf keeps no precomputation so the product is used in place
+    ECPoint inner = (leaf ? precomp : precomp.clone())
         .multiplyPoint(v);
 
     //g_2^alpha * inner
-    ECPoint part1 = inner.clone().addPoint(master_sec_key);
+    ECPoint part1 = inner.addPoint(master_sec_key);
 
     // Part 2
     //g_head^v
-    ECPoint part2 = pp.g_head.clone().multiplyPoint(v);
+    ECPoint part2 = pp.bases.gHead(v);
 
     // Part 3
     //h_k+1^v,...,h_l^v
-    List<ECPoint> part3 = new ArrayList();
-    List<ECPoint> h = new ArrayList<>();
-
-    h = pp.h.subList(depth + 1, pp.h.size()); //leave out first
-    if (h.size() == 0)
-      logger.info("last delegate, no h sublist left");
+    List<ECPoint> part3 = leaf ? Collections.emptyList() : new ArrayList<>();
+    if (!leaf) {
+      List<ECPoint> h = pp.h.subList(depth + 1, pp.h.size()); //leave out first
+      if (h.size() == 0)
+        logger.info("last delegate, no h sublist left");
+
+      for (int i = 0; i < h.size(); i++) {
+        part3.add(pp.bases.hSecret(depth + 1 + i, v));
+      }
 
-    for (ECPoint hi : h) {
-      part3.add(hi.clone().multiplyPoint(v));
+      assert (part3.size() == pp.h.size() - 1);
     }
 
-    assert (part3.size() == pp.h.size() - 1);
-
-    return new DelegatedSecretKey(part1, part2, part3, depth + 1);
+    DelegatedSecretKey delegated = new DelegatedSecretKey(part1, part2, part3, depth + 1);
+    if (!leaf && id != null)
+      delegated.setPrecomp(IdentityPath.of(pp, id), precomp);
+    return delegated;
   }
 
   @Override
   public DelegatedSecretKey delegation(PublicParams pp, DelegatedSecretKey del_key, byte[] id) {
+    IdentityPath path = IdentityPath.of(pp, pp.ID);
+    pp.addID(id);
+    return delegation(pp, path, del_key, pp.hash(id), id, false);
+  }
+
+  /**
+   * Delegates <code>del_key</code> to <code>id</code>. Unlike {@link #delegation(PublicParams, DelegatedSecretKey, byte[])}
+   * <code>pp</code> is not modified, the identities of the key are passed in <code>path</code>.
+   */
+  public DelegatedSecretKey delegation(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key, byte[] id) {
+    return delegation(pp, path, del_key, pp.hash(id), id, false);
+  }
+
+  /**
+   * Delegates <code>del_key</code> to an identity given by its hash, e.g. a message digested in a stream.
+   * The result keeps no identity product, it is meant as signature.
+   */
+  public DelegatedSecretKey delegation(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key,
+                                       BigInteger idHash) {
+    return delegation(pp, path, del_key, idHash, null, false);
+  }
+
+  /**
+   * Signs <code>msg</code> as leaf below <code>del_key</code>, which was delegated to <code>path</code>.
+   * Only a_0 and a_1 are computed, the b components are not needed for verification, so the result
+   * can not be delegated.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key, byte[] msg) {
+    return delegation(pp, path, del_key, pp.hash(msg), null, true);
+  }
+
+  /**
+   * Same as {@link #sign(PublicParams, IdentityPath, DelegatedSecretKey, byte[])} with the hash of the
+   * message already computed.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key, BigInteger msgHash) {
+    return delegation(pp, path, del_key, msgHash, null, true);
+  }
+
+  /**
+   * @param id identity the key is delegated to, <code>null</code> if no identity product is kept in the result
+   */
+  private DelegatedSecretKey delegation(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key,
+                                        BigInteger hash_k, byte[] id, boolean leaf) {
     logger.debug("another delegation");
     assert pp.max_hibe_height > del_key.depth : "Further delegations are not allowed";
-    pp.addID(id);
-    assert pp.ID.size() - 1 == del_key.depth;
+    if (path.size() != del_key.depth)
+      throw new IllegalArgumentException("Number of IDs not matching delegation depth");
     final BigInteger w = new BigInteger(pp.p.bitLength() - 1, mRandom);
 
     // Part 1
-    //h_1^H(I_1)...h_k^H(I_k)
-    ECPoint hibeProduct = pp.h.get(0).clone().multiplyPoint(pp.hash(pp.ID.get(0)));
-    for (int i = 1; i <= del_key.depth; i++) { // cuz del_key.depth+1 = k
-      ECPoint additive = pp.h.get(i).clone().multiplyPoint(pp.hash(pp.ID.get(i)));
-      hibeProduct.addPoint(additive);
-    }
+    //h_1^H(I_1)...h_k-1^H(I_k-1) * g_3, precomputed in del_key when it was delegated
+    ECPoint prefix = prefix(pp, path, del_key);
+
+    //h_1^H(I_1)...h_k^H(I_k) * g_3, kept in the new key
+    ECPoint precomp = pp.bases.h(del_key.depth, hash_k).addPoint(prefix);
 
-    //(hibeProduct * g_3)^w
-    ECPoint inner = hibeProduct.clone().addPoint(pp.g3)
+    //(hibeProduct * g_3)^w, a leaf keeps no precomputation so the product is used in place
+    ECPoint inner = (leaf ? precomp : precomp.clone())
         .multiplyPoint(w);
 
     //a_0 * b_k^H(I_k) * inner
-    ECPoint part1 = del_key.a0.clone()
-        .addPoint(del_key.get_b_k().clone()
-            .multiplyPoint(pp.hash(pp.ID.get(del_key.depth))))
+    ECPoint part1 = del_key.get_b_k().clone()
+        .multiplyPoint(hash_k)
+        .addPoint(del_key.a0)
         .addPoint(inner);
 
     // Part 2
     //a_1 * g_head^w
-    ECPoint part2 = del_key.a1.clone().addPoint(pp.g_head.clone().multiplyPoint(w));
+    ECPoint part2 = pp.bases.gHead(w).addPoint(del_key.a1);
 
     // Part 3
     //b_k+1 * h_k+1^w,...,b_l * h_l^w
-    List<ECPoint> part3 = new ArrayList<>();
+    List<ECPoint> part3 = leaf ? Collections.emptyList() : new ArrayList<>();
+    if (!leaf) {
+      List<ECPoint> b = del_key.b.subList(1, del_key.b.size()); // first left out (k+1) cuz only k elements
+      List<ECPoint> h = pp.h.subList(del_key.depth + 1, pp.h.size()); // k+1
+      assert (h.size() == b.size());
+      if (h.size() == 0)
+        logger.info("last delegate, no h sublist left");
+
+      for (int i = 0; i < h.size(); i++) { // cuz sublist start with element k+1
+        part3.add(b.get(i).clone().addPoint(pp.bases.hSecret(del_key.depth + 1 + i, w)));
+      }
+      assert (part3.size() == del_key.b.size() - 1);
+    }
 
-    List<ECPoint> b = del_key.b.subList(1, del_key.b.size()); // first left out (k+1) cuz only k elements
-    List<ECPoint> h = pp.h.subList(del_key.depth + 1, pp.h.size()); // k+1
-    assert (h.size() == b.size());
-    if (h.size() == 0)
-      logger.info("last delegate, no h sublist left");
+    DelegatedSecretKey delegated = new DelegatedSecretKey(part1, part2, part3, del_key.depth + 1);
+    if (!leaf && id != null)
+      delegated.setPrecomp(path.append(pp, id), precomp);
+    return delegated;
+  }
 
-    for (int i = 0; i < h.size(); i++) { // cuz sublist start with element k+1
-      part3.add(b.get(i).clone().addPoint(h.get(i).clone().multiplyPoint(w)));
+  /**
+   * Returns g_3 * h_1^H(I_1) * ... * h_k^H(I_k) for the identities <code>path</code> of <code>del_key</code>.
+   * Taken from the key if precomputed, stored in it otherwise.
+   */
+  private ECPoint prefix(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key) {
+    ECPoint prefix = del_key.getPrecomp(path);
+    if (prefix == null) {
+      if (del_key.depth == 0) {
+        prefix = pp.g3.clone();
+      } else {
+        // the table result is a new point, so it is summed up in place
+        prefix = pp.bases.h(0, path.hash(0));
+        for (int i = 1; i < del_key.depth; i++) { // cuz del_key.depth+1 = k
+          prefix.addPoint(pp.bases.h(i, path.hash(i)));
+        }
+        prefix.addPoint(pp.g3);
+      }
+      del_key.setPrecomp(path, prefix);
     }
-    assert (part3.size() == del_key.b.size() - 1);
+    return prefix;
+  }
 
-    return new DelegatedSecretKey(part1, part2, part3, del_key.depth + 1);
+  /**
+   * Offline part of a leaf signature below <code>del_key</code>, which was delegated to <code>path</code>,
+   * everything that does not depend on the message.
+   */
+  public SigningNonce precomputeNonce(PublicParams pp, IdentityPath path, DelegatedSecretKey del_key) {
+    assert pp.max_hibe_height > del_key.depth : "Further delegations are not allowed";
+    if (path.size() != del_key.depth)
+      throw new IllegalArgumentException("Number of IDs not matching delegation depth");
+    final BigInteger w = new BigInteger(pp.p.bitLength() - 1, mRandom);
+
+    //a_0 * (h_1^H(I_1)...h_k^H(I_k) * g_3)^w
+    ECPoint a0 = prefix(pp, path, del_key).clone().multiplyPoint(w).addPoint(del_key.a0);
+    //a_1 * g_head^w
+    ECPoint a1 = pp.bases.gHead(w).addPoint(del_key.a1);
+    //b_k+1 * h_k+1^w
+    ECPoint c = pp.bases.hSecret(del_key.depth, w).addPoint(del_key.get_b_k());
+    return new SigningNonce(a0, a1, c, del_key.depth);
+  }
+
+  /**
+   * Online part of a leaf signature, a single scalar multiplication:
+   * a_0' = nonce.a0 * nonce.c^H(msg), a_1' = nonce.a1.
+   * The same signature as {@link #sign(PublicParams, IdentityPath, DelegatedSecretKey, byte[])} would
+   * produce with the randomness of the nonce. Works in place, the nonce is consumed and its points
+   * become part of the signature.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, SigningNonce nonce, byte[] msg) {
+    return sign(pp, nonce, pp.hash(msg));
+  }
+
+  /**
+   * Same as {@link #sign(PublicParams, SigningNonce, byte[])} with the hash of the message already computed.
+   */
+  public DelegatedSecretKey sign(PublicParams pp, SigningNonce nonce, BigInteger msgHash) {
+    ECPoint a0 = nonce.c.multiplyPoint(msgHash).addPoint(nonce.a0);
+    return new DelegatedSecretKey(a0, nonce.a1, Collections.emptyList(), nonce.depth + 1);
   }
 
   @Override
@@ -181,34 +397,43 @@ public class Hibe implements IHIBE {
     logger.debug("encryption");
     final BigInteger s = new BigInteger(pp.p.bitLength() - 1, mRandom);
 
-    //id' <- (H(I_1),...,H(I_k)) e Z_p*^k, k<l
-    List<BigInteger> HI = new ArrayList<>();
-    for (int i = 0; i < pp.ID.size(); i++) {
-      HI.add(pp.hash(pp.ID.get(i)));
-    }
-
     // Part 1
     //e(g_2, pk)^s * M
     ExtensionFieldElement part1 = mPairing.pair(pp.g2, pubK) // now in Target group
         .exponentiate(s)
         .multiply(msg_gt);
+    return encrypt(part1, s, pp);
+  }
 
+  /**
+   * Encryption with e(g_2, pk) taken from <code>pubK</code>, no pairing is computed.
+   */
+  public ChipherText encrypt(PreparedPublicKey pubK, ExtensionFieldElement msg_gt, PublicParams pp) {
+    logger.debug("encryption with prepared key");
+    final BigInteger s = new BigInteger(pp.p.bitLength() - 1, mRandom);
+
+    // Part 1
+    //e(g_2, pk)^s * M
+    ExtensionFieldElement part1 = pubK.exponentiate(s).multiply(msg_gt);
+    return encrypt(part1, s, pp);
+  }
+
+  private ChipherText encrypt(ExtensionFieldElement part1, BigInteger s, PublicParams pp) {
     // Part 2
     //g_head^s
-    ECPoint part2 = pp.g_head.clone().multiplyPoint(s);
+    ECPoint part2 = pp.bases.gHead(s);
 
     // Part 3
-    //(h_1^îd'[1]*...*h_k^id'[k] * g_3)^s
+    //(h_1^îd'[1]*...*h_k^id'[k] * g_3)^s, id' <- (H(I_1),...,H(I_k)) e Z_p*^k, k<l
     ECPoint part3;
     if (pp.ID.size() > 0) {
-      part3 = pp.h.get(0).clone().multiplyPoint(HI.get(0));
+      part3 = pp.bases.h(0, pp.hash(pp.ID.get(0)));
       for (int i = 1; i < pp.ID.size(); i++) {
-        part3.addPoint(pp.h.get(i).clone().multiplyPoint(HI.get(i)));
+        part3.addPoint(pp.bases.h(i, pp.hash(pp.ID.get(i))));
       }
-      part3 = part3.clone().addPoint(pp.g3)
-          .multiplyPoint(s);
+      part3.addPoint(pp.g3).multiplyPoint(s);
     } else {
-      part3 = pp.g3.clone().multiplyPoint(s);
+      part3 = pp.bases.g3(s);
     }
 
     return new ChipherText(part1, part2, part3);
@@ -257,23 +482,187 @@ public class Hibe implements IHIBE {
 
   @Override
   public boolean ntDeterVerify(PublicParams pp, ECPoint pubKey, DelegatedSecretKey dsk) { //optimized
+    return ntDeterVerify(pp, pubKey, IdentityPath.of(pp, pp.ID), dsk);
+  }
+
+  /**
+   * Same as {@link #ntDeterVerify(PublicParams, ECPoint, DelegatedSecretKey)} with the identities
+   * taken from <code>path</code> instead of <code>pp.ID</code>, including the signed message as last level.
+   */
+  public boolean ntDeterVerify(PublicParams pp, ECPoint pubKey, IdentityPath path, DelegatedSecretKey dsk) {
     logger.info("entering deterministic verify");
     // e(h1^H(id1)*...*hl^H(idl), sk2) * e(g2, pk) = e(sk1, g_head) ... sk1 = a0, sk2 = a1 ... b = []
-    List<BigInteger> Hi = new ArrayList<>();
-    for (int i = 0; i < pp.ID.size(); i++) {
-      Hi.add(pp.hash(pp.ID.get(i)));
+    Scratch scratch = Scratch.get();
+    int k = path.size();
+    BigInteger[] Hi = scratch.scalars(k);
+    ECPoint[] h = scratch.points(k);
+    for (int i = 0; i < k; i++) {
+      Hi[i] = path.hash(i);
+      h[i] = pp.h.get(i);
+    }
+
+    ECPoint h_multi = (k > 0) ? mPairing.getGroup1().multiplySimultaneously(Hi, h).addPoint(pp.g3) : pp.g3;
+    Scratch.clear(Hi, h);
+
+    logger.info("verifying...");
+    ECPoint[] g1 = scratch.g1Triple;
+    ECPoint[] g2 = scratch.g2Triple;
+    g1[0] = h_multi;
+    g1[1] = pp.g2;
+    g1[2] = dsk.a0.clone().negatePoint();
+    g2[0] = dsk.a1;
+    g2[1] = pubKey;
+    g2[2] = pp.g_head;
+    boolean valid = mPairing.pairProduct(g1, g2).isOne();
+    Scratch.clear(g1, g2);
+    return valid;
+  }
+
+  /**
+   * Extends a cached identity prefix by one level.
+   *
+   * @param pp     public parameters
+   * @param prefix g3 * h_1^H(I_1) * ... * h_level^H(I_level), g3 for the empty prefix
+   * @param level  index of the level <code>id</code> is placed on
+   * @param id     identity of that level
+   * @return prefix * h_level+1^H(id)
+   */
+  public ECPoint extendPrefix(PublicParams pp, ECPoint prefix, int level, byte[] id) {
+    return extendPrefix(pp, prefix, level, pp.hash(id));
+  }
+
+  /**
+   * Same as {@link #extendPrefix(PublicParams, ECPoint, int, byte[])} with the hash of the identity already computed.
+   */
+  public ECPoint extendPrefix(PublicParams pp, ECPoint prefix, int level, BigInteger idHash) {
+    assert pp.max_hibe_height > level : "Further delegations are not allowed";
+    return pp.bases.h(level, idHash).addPoint(prefix);
+  }
+
+  /**
+   * Deterministic verification with all but the last identity already folded into
+   * <code>prefix</code> (see {@link #extendPrefix}), so only the last level is hashed
+   * and multiplied here.
+   */
+  public boolean ntDeterVerify(PublicParams pp, ECPoint pubKey, ECPoint prefix, byte[] id, DelegatedSecretKey dsk) {
+    if (dsk.depth < 1 || dsk.depth > pp.h.size()) {
+      logger.info("delegation depth does not fit the public parameters");
+      return false;
     }
+    ECPoint h_multi = extendPrefix(pp, prefix, dsk.depth - 1, id);
 
-    ECPoint h_multi = pp.g3.clone();
-    if (!Hi.isEmpty())
-      h_multi.addPoint(mPairing.getGroup1().multiplySimultaneously(Hi.toArray(new BigInteger[]{}), pp.h.toArray(new ECPoint[]{})));
+    logger.info("verifying...");
+    Scratch scratch = Scratch.get();
+    ECPoint[] g1 = scratch.g1Triple;
+    ECPoint[] g2 = scratch.g2Triple;
+    g1[0] = h_multi;
+    g1[1] = pp.g2;
+    g1[2] = dsk.a0.clone().negatePoint();
+    g2[0] = dsk.a1;
+    g2[1] = pubKey;
+    g2[2] = pp.g_head;
+    boolean valid = mPairing.pairProduct(g1, g2).isOne();
+    Scratch.clear(g1, g2);
+    return valid;
+  }
+
+  /**
+   * Same as {@link #ntDeterVerify(PublicParams, ECPoint, ECPoint, byte[], DelegatedSecretKey)}, with
+   * e(g2, pk) taken from <code>pubKey</code>, so only two pairings are computed.
+   */
+  public boolean ntDeterVerify(PublicParams pp, PreparedPublicKey pubKey, ECPoint prefix, byte[] id, DelegatedSecretKey dsk) {
+    return ntDeterVerify(pp, pubKey, prefix, pp.hash(id), dsk);
+  }
 
+  /**
+   * Same as {@link #ntDeterVerify(PublicParams, PreparedPublicKey, ECPoint, byte[], DelegatedSecretKey)} with
+   * the hash of the last identity already computed, e.g. of a message digested in a stream.
+   */
+  public boolean ntDeterVerify(PublicParams pp, PreparedPublicKey pubKey, ECPoint prefix, BigInteger idHash,
+                               DelegatedSecretKey dsk) {
+    if (dsk.depth < 1 || dsk.depth > pp.h.size()) {
+      logger.info("delegation depth does not fit the public parameters");
+      return false;
+    }
+    ECPoint h_multi = extendPrefix(pp, prefix, dsk.depth - 1, idHash);
 
     logger.info("verifying...");
-    return mPairing.pairProduct(new ECPoint[]{h_multi, pp.g2, dsk.a0.clone().negatePoint()}, new ECPoint[]{dsk.a1, pubKey, pp.g_head}).isOne();
+    Scratch scratch = Scratch.get();
+    ECPoint[] g1 = scratch.g1Pair;
+    ECPoint[] g2 = scratch.g2Pair;
+    g1[0] = h_multi;
+    g1[1] = dsk.a0.clone().negatePoint();
+    g2[0] = dsk.a1;
+    g2[1] = pp.g_head;
+    boolean valid = mPairing.pairProduct(g1, g2).multiply(pubKey.getPairing()).isOne();
+    Scratch.clear(g1, g2);
+    return valid;
+  }
+
+  /**
+   * @return an empty batch of pairing product equations using this engine
+   */
+  public PairingBatch newBatch() {
+    return new PairingBatch(mPairing, mRandom);
+  }
+
+  /**
+   * Adds the verification equation of a signature on <code>id</code> below <code>prefix</code> to
+   * <code>batch</code>, see {@link #ntDeterVerify(PublicParams, PreparedPublicKey, ECPoint, byte[], DelegatedSecretKey)}.
+   *
+   * @return index of the equation in the batch
+   */
+  public int addToBatch(PairingBatch batch, PublicParams pp, PreparedPublicKey pubKey, ECPoint prefix, byte[] id,
+                        DelegatedSecretKey dsk) {
+    return addToBatch(batch, pp, pubKey, prefix, pp.hash(id), dsk);
+  }
+
+  /**
+   * Same as {@link #addToBatch(PairingBatch, PublicParams, PreparedPublicKey, ECPoint, byte[], DelegatedSecretKey)}
+   * with the hash of the last identity already computed.
+   */
+  public int addToBatch(PairingBatch batch, PublicParams pp, PreparedPublicKey pubKey, ECPoint prefix,
+                        BigInteger idHash, DelegatedSecretKey dsk) {
+    if (dsk.depth < 1 || dsk.depth > pp.h.size()) {
+      logger.info("delegation depth does not fit the public parameters");
+      return batch.addInvalid();
+    }
+    batch.share(pp.g_head);
+    ECPoint h_multi = extendPrefix(pp, prefix, dsk.depth - 1, idHash);
+    return batch.add(new ECPoint[]{h_multi, dsk.a0.clone().negatePoint()}, new ECPoint[]{dsk.a1, pp.g_head}, pubKey);
+  }
+
+  /**
+   * Verifies many signatures below the same identity prefix at once with small random exponents,
+   * one pairing product for all of them if they are valid.
+   *
+   * @param ids        the signed messages, i.e. the last identity level of each signature
+   * @param signatures signatures, in the same order as <code>ids</code>
+   * @return indices of the invalid signatures, empty if all are valid
+   */
+  public List<Integer> batchVerify(PublicParams pp, PreparedPublicKey pubKey, ECPoint prefix, List<byte[]> ids,
+                                   List<DelegatedSecretKey> signatures) {
+    if (ids.size() != signatures.size())
+      throw new IllegalArgumentException("Number of messages and signatures differ");
+    PairingBatch batch = newBatch();
+    for (int i = 0; i < ids.size(); i++) {
+      addToBatch(batch, pp, pubKey, prefix, ids.get(i), signatures.get(i));
+    }
+    return batch.findInvalid();
+  }
+
+  /**
+   * Computes e(g2, pk) once for a public key that is used for many verifications or encryptions.
+   */
+  public PreparedPublicKey preparePublicKey(PublicParams pp, ECPoint pubKey) {
+    return new PreparedPublicKey(pubKey, mPairing.pair(pp.g2, pubKey));
   }
 
   public Pairing getPairing() {
     return mPairing;
   }
+
+  public Curve getCurve() {
+    return mCurve;
+  }
 }
@@ -0,0 +1,164 @@
+package HIBE;
+
+import Entities.PreparedPublicKey;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.ec.math.curve.Pairing;
+import iaik.security.ec.math.field.ExtensionFieldElement;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Randomized batch of pairing product equations
+ * <code>e(P_1, Q_1) * ... * e(P_n, Q_n) * e(g2, pk) = 1</code>.
+ * <p>
+ * Each equation is raised to a fresh exponent r of {@link #EXPONENT_BITS} random bits and all
+ * of them are checked with one pairing product and one final exponentiation. The G1 arguments
+ * of pairs with a G2 argument registered by {@link #share} (e.g. g_head) are summed
+ * up first, and the e(g2, pk) factors of a key are combined into one exponentiation. A forged equation passes
+ * with probability at most 2^-{@link #EXPONENT_BITS}.
+ * <p>
+ * Not safe to be used by several threads at once.
+ */
+public class PairingBatch {
+
+  /**
+   * Number of random bits of the exponents, a fixed bit above them keeps the exponents nonzero.
+   */
+  public static final int EXPONENT_BITS = 64;
+
+  private final Pairing mPairing;
+  private final SecureRandom mRandom;
+  private final BigInteger mOrder;
+  private final List<Equation> mEquations = new ArrayList<>();
+  private final Set<ECPoint> mShared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  PairingBatch(Pairing pairing, SecureRandom random) {
+    mPairing = pairing;
+    mRandom = random;
+    mOrder = pairing.getGroup1().getOrder();
+  }
+
+  /**
+   * Registers a G2 argument used by many equations. Pairs with exactly this object as G2
+   * argument are merged into a single pair.
+   */
+  public void share(ECPoint g2) {
+    mShared.add(g2);
+  }
+
+  /**
+   * Adds the equation <code>e(g1[0], g2[0]) * ... * e(g1[n-1], g2[n-1]) * e(g2, pk) = 1</code>.
+   * The points are not modified.
+   *
+   * @param pubKey key providing e(g2, pk), <code>null</code> if the equation has no constant factor
+   * @return index of the equation
+   */
+  public int add(ECPoint[] g1, ECPoint[] g2, PreparedPublicKey pubKey) {
+    if (g1.length != g2.length)
+      throw new IllegalArgumentException("Number of G1 and G2 arguments differ");
+    mEquations.add(new Equation(g1, g2, pubKey));
+    return mEquations.size() - 1;
+  }
+
+  /**
+   * Adds an equation that is known to be invalid, e.g. a signature of the wrong depth, so indices
+   * keep matching the inputs of the caller.
+   */
+  public int addInvalid() {
+    mEquations.add(null);
+    return mEquations.size() - 1;
+  }
+
+  public int size() {
+    return mEquations.size();
+  }
+
+  /**
+   * @return <code>true</code> if all equations hold (with overwhelming probability)
+   */
+  public boolean verify() {
+    return verify(0, mEquations.size());
+  }
+
+  /**
+   * Finds the equations which do not hold by bisecting the batch.
+   *
+   * @return indices of the failing equations in ascending order, empty if all hold
+   */
+  public List<Integer> findInvalid() {
+    List<Integer> invalid = new ArrayList<>();
+    findInvalid(0, mEquations.size(), invalid);
+    return invalid;
+  }
+
+  private void findInvalid(int from, int to, List<Integer> invalid) {
+    if (from >= to || verify(from, to))
+      return;
+    if (to - from == 1) {
+      invalid.add(from);
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    findInvalid(from, middle, invalid);
+    findInvalid(middle, to, invalid);
+  }
+
+  private boolean verify(int from, int to) {
+    List<ECPoint> g1 = new ArrayList<>();
+    List<ECPoint> g2 = new ArrayList<>();
+    Map<ECPoint, ECPoint> shared = new IdentityHashMap<>();
+    Map<PreparedPublicKey, BigInteger> constants = new IdentityHashMap<>();
+
+    for (int i = from; i < to; i++) {
+      Equation equation = mEquations.get(i);
+      if (equation == null)
+        return false;
+      BigInteger r = new BigInteger(EXPONENT_BITS, mRandom).setBit(EXPONENT_BITS);
+
+      for (int j = 0; j < equation.g1.length; j++) {
+        ECPoint scaled = equation.g1[j].clone().multiplyPoint(r);
+        if (mShared.contains(equation.g2[j])) {
+          ECPoint sum = shared.get(equation.g2[j]);
+          if (sum == null)
+            shared.put(equation.g2[j], scaled);
+          else
+            sum.addPoint(scaled);
+        } else {
+          g1.add(scaled);
+          g2.add(equation.g2[j]);
+        }
+      }
+      if (equation.pubKey != null)
+        constants.merge(equation.pubKey, r, (a, b) -> a.add(b).mod(mOrder));
+    }
+    for (Map.Entry<ECPoint, ECPoint> entry : shared.entrySet()) {
+      g1.add(entry.getValue());
+      g2.add(entry.getKey());
+    }
+
+    ExtensionFieldElement product = mPairing.pairProduct(g1.toArray(new ECPoint[0]), g2.toArray(new ECPoint[0]));
+    for (Map.Entry<PreparedPublicKey, BigInteger> entry : constants.entrySet()) {
+      product = product.multiply(entry.getKey().exponentiate(entry.getValue()));
+    }
+    return product.isOne();
+  }
+
+  private static final class Equation {
+    final ECPoint[] g1;
+    final ECPoint[] g2;
+    final PreparedPublicKey pubKey;
+
+    Equation(ECPoint[] g1, ECPoint[] g2, PreparedPublicKey pubKey) {
+      this.g1 = g1.clone();
+      this.g2 = g2.clone();
+      this.pubKey = pubKey;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package HIBE;
+
+import iaik.security.ec.math.curve.ECPoint;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Per-thread argument arrays for pairing products and multi-scalar multiplications, so the
+ * verification paths do not allocate them per call. The arrays are only valid until the next
+ * call on the same thread and are cleared after use to not keep points alive.
+ */
+final class Scratch {
+
+  private static final ThreadLocal<Scratch> sScratch = ThreadLocal.withInitial(Scratch::new);
+
+  final ECPoint[] g1Pair = new ECPoint[2];
+  final ECPoint[] g2Pair = new ECPoint[2];
+  final ECPoint[] g1Triple = new ECPoint[3];
+  final ECPoint[] g2Triple = new ECPoint[3];
+
+  private BigInteger[][] mScalars = new BigInteger[0][];
+  private ECPoint[][] mPoints = new ECPoint[0][];
+
+  static Scratch get() {
+    return sScratch.get();
+  }
+
+  /**
+   * @return an array of exactly <code>length</code> scalars
+   */
+  BigInteger[] scalars(int length) {
+    if (length >= mScalars.length) {
+      BigInteger[][] grown = new BigInteger[length + 1][];
+      System.arraycopy(mScalars, 0, grown, 0, mScalars.length);
+      mScalars = grown;
+    }
+    if (mScalars[length] == null)
+      mScalars[length] = new BigInteger[length];
+    return mScalars[length];
+  }
+
+  /**
+   * @return an array of exactly <code>length</code> points
+   */
+  ECPoint[] points(int length) {
+    if (length >= mPoints.length) {
+      ECPoint[][] grown = new ECPoint[length + 1][];
+      System.arraycopy(mPoints, 0, grown, 0, mPoints.length);
+      mPoints = grown;
+    }
+    if (mPoints[length] == null)
+      mPoints[length] = new ECPoint[length];
+    return mPoints[length];
+  }
+
+  static void clear(Object[] a) {
+    Arrays.fill(a, null);
+  }
+
+  static void clear(Object[] a, Object[] b) {
+    Arrays.fill(a, null);
+    Arrays.fill(b, null);
+  }
+}
@@ -1,6 +1,7 @@
 import Entities.*;
 import HIBE.Hibe;
 import iaik.security.ec.math.curve.AtePairingOverBarretoNaehrigCurveFactory;
+import iaik.security.ec.math.curve.ECPoint;
 import iaik.security.ec.math.curve.Pairing;
 import iaik.security.ec.math.curve.PairingTypes;
 import iaik.security.ec.math.field.ExtensionFieldElement;
@@ -12,7 +13,10 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 
@@ -72,6 +76,28 @@ public class UnitsTests {
     }
   }
 
+  @Test
+  public void identityHashCache() {
+    BigInteger p = Hibe.getInstance().getPairing().getGroup1().getOrder();
+    PublicParams pp = new PublicParams(p, null, null, null, null, null, null, null, null, 0);
+    IdentityHash hash = IdentityHash.forOrder(p);
+    Assert.assertSame(hash, IdentityHash.forOrder(p));
+
+    byte[] domain = ("cached domain " + System.nanoTime()).getBytes();
+    int cached = hash.getCachedIdentities();
+    BigInteger first = pp.hash(domain);
+    Assert.assertEquals(first, pp.hash(domain.clone()));
+    Assert.assertEquals(Math.min(cached + 1, IdentityHash.CACHE_SIZE), hash.getCachedIdentities());
+
+    byte[] data = new byte[IdentityHash.MAX_CACHED_ID_LENGTH + 1];
+    new Random().nextBytes(data);
+    cached = hash.getCachedIdentities();
+    BigInteger h = pp.hash(data);
+    Assert.assertEquals(cached, hash.getCachedIdentities());
+    Assert.assertEquals(h, pp.hash(data));
+    Assert.assertTrue(p.compareTo(h) > 0);
+  }
+
   @Test
   public void manyDelegations() {
     // Webserver
@@ -98,6 +124,28 @@ public class UnitsTests {
     Assert.assertTrue(hibeClient.ntDeterVerify(pp, mkp.pubKey, delSecKey3));
   }
 
+  @Test
+  public void precomputedDelegation() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(3, new SecurityParams());
+    MasterKeyPair mkp = hibe.keyGen(pp);
+    DelegatedSecretKey delSecKey = hibe.delegation(pp, mkp.secKey, "alberlukas@live.de".getBytes());
+    DelegatedSecretKey delSecKey2 = hibe.delegation(pp, delSecKey, "19-12-2019_12:12:12".getBytes());
+    Assert.assertNotNull(delSecKey2.getPrecomp(pp.ID));
+    Assert.assertNull(delSecKey2.getPrecomp(pp.ID.subList(0, 1)));
+
+    // the precomputed product is only used for the identities it belongs to
+    PublicParams ppWrong = new PublicParams(pp.p, pp.G1, pp.G2, pp.GT, pp.g, pp.g_head, pp.g2, pp.g3, pp.h, pp.max_hibe_height);
+    ppWrong.addID("alberlukas@live.de".getBytes());
+    ppWrong.addID("20-12-2019_12:12:12".getBytes());
+    DelegatedSecretKey wrong = hibe.delegation(ppWrong, delSecKey2, "message".getBytes());
+    ppWrong.ID.set(1, "19-12-2019_12:12:12".getBytes());
+    Assert.assertFalse(hibe.ntDeterVerify(ppWrong, mkp.pubKey, wrong));
+
+    DelegatedSecretKey delSecKey3 = hibe.delegation(pp, delSecKey2, "message".getBytes());
+    Assert.assertTrue(hibe.ntDeterVerify(pp, mkp.pubKey, delSecKey3));
+  }
+
   @Test
   public void wantToVerifyMoreIDs() {
     // Webserver
@@ -305,4 +353,177 @@ public class UnitsTests {
     ExtensionFieldElement m = hibeClient.decrypt(pp2, key, ct);
     Assert.assertNotEquals(gt, m);
   }
+
+  @Test
+  public void fixedBaseTable() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(2, new SecurityParams());
+    Random random = new Random(42);
+
+    FixedBaseTable g1Table = new FixedBaseTable(pp.g3, pp.p.bitLength(), PrecomputedBases.WINDOW);
+    FixedBaseTable g2Table = new FixedBaseTable(pp.g_head, pp.p.bitLength(), 3);
+    for (int i = 0; i < 10; i++) {
+      BigInteger k = new BigInteger(pp.p.bitLength() - 1, random);
+      Assert.assertEquals(pp.g3.clone().multiplyPoint(k), g1Table.multiply(k));
+      Assert.assertEquals(pp.g_head.clone().multiplyPoint(k), g2Table.multiply(k));
+      Assert.assertEquals(pp.h.get(1).clone().multiplyPoint(k), pp.bases.h(1, k));
+    }
+    Assert.assertEquals(pp.G1.getNeutralPoint(), g1Table.multiply(BigInteger.ZERO));
+    BigInteger large = pp.p.shiftLeft(3).add(BigInteger.ONE);
+    Assert.assertEquals(pp.g3.clone().multiplyPoint(large), g1Table.multiply(large));
+  }
+
+  @Test
+  public void secretFixedBaseTable() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(2, new SecurityParams());
+    Random random = new Random(42);
+
+    SecretFixedBaseTable g1Table = new SecretFixedBaseTable(pp.g3, pp.p.bitLength(), PrecomputedBases.WINDOW);
+    SecretFixedBaseTable g2Table = new SecretFixedBaseTable(pp.g_head, pp.p.bitLength(), 3);
+    for (int i = 0; i < 10; i++) {
+      BigInteger k = new BigInteger(pp.p.bitLength() - 1, random);
+      Assert.assertEquals(pp.g3.clone().multiplyPoint(k), g1Table.multiply(k));
+      Assert.assertEquals(pp.g_head.clone().multiplyPoint(k), g2Table.multiply(k));
+      Assert.assertEquals(pp.g_head.clone().multiplyPoint(k), pp.bases.gHead(k));
+      Assert.assertEquals(pp.h.get(1).clone().multiplyPoint(k), pp.bases.hSecret(1, k));
+    }
+    Assert.assertEquals(pp.G1.getNeutralPoint(), g1Table.multiply(BigInteger.ZERO));
+    BigInteger max = BigInteger.ONE.shiftLeft(pp.p.bitLength()).subtract(BigInteger.ONE);
+    Assert.assertEquals(pp.g3.clone().multiplyPoint(max), g1Table.multiply(max));
+  }
+
+  @Test
+  public void preparedPublicKey() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(2, new SecurityParams());
+    MasterKeyPair mkp = hibe.keyGen(pp);
+    PreparedPublicKey prepared = hibe.preparePublicKey(pp, mkp.pubKey);
+    Assert.assertEquals(hibe.getPairing().pair(pp.g2, mkp.pubKey), prepared.getPairing());
+
+    byte[] id = "domain".getBytes();
+    DelegatedSecretKey key = hibe.delegation(pp, mkp.secKey, id);
+    Assert.assertTrue(hibe.ntDeterVerify(pp, prepared, pp.g3, id, key));
+    Assert.assertFalse(hibe.ntDeterVerify(pp, prepared, pp.g3, "other".getBytes(), key));
+
+    ExtensionFieldElement gt = pp.GT.getUniformlyRandomNonZeroElement();
+    ChipherText ct = hibe.encrypt(prepared, gt, pp);
+    Assert.assertEquals(gt, hibe.decrypt(pp, key, ct));
+  }
+
+  @Test
+  public void batchVerify() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(2, new SecurityParams());
+    MasterKeyPair mkp = hibe.keyGen(pp);
+    PreparedPublicKey prepared = hibe.preparePublicKey(pp, mkp.pubKey);
+    byte[] domain = "domain".getBytes();
+    DelegatedSecretKey key = hibe.delegation(pp, mkp.secKey, domain);
+    ECPoint prefix = hibe.extendPrefix(pp, pp.g3, 0, domain);
+
+    List<byte[]> messages = new ArrayList<>();
+    List<DelegatedSecretKey> signatures = new ArrayList<>();
+    IdentityPath path = IdentityPath.of(pp, domain);
+    for (int i = 0; i < 8; i++) {
+      byte[] message = ("message " + i).getBytes();
+      messages.add(message);
+      signatures.add(hibe.sign(pp, path, key, message));
+    }
+    Assert.assertTrue(hibe.batchVerify(pp, prepared, prefix, messages, signatures).isEmpty());
+
+    messages.set(2, "forged".getBytes());
+    signatures.set(5, signatures.get(6));
+    Assert.assertEquals(Arrays.asList(2, 5), hibe.batchVerify(pp, prepared, prefix, messages, signatures));
+  }
+
+  @Test
+  public void identityPath() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(3, new SecurityParams()).shared();
+    MasterKeyPair mkp = hibe.keyGen(pp);
+    byte[] domain = "domain".getBytes();
+    byte[] epoch = "epoch".getBytes();
+    byte[] msg = "message".getBytes();
+
+    IdentityPath path = IdentityPath.EMPTY;
+    DelegatedSecretKey key = hibe.delegation(pp, path, mkp.secKey, domain);
+    path = path.append(pp, domain);
+    Assert.assertEquals(IdentityPath.of(pp, domain), path);
+    key = hibe.delegation(pp, path, key, epoch);
+    path = path.append(pp, epoch);
+
+    DelegatedSecretKey signature = hibe.sign(pp, path, key, msg);
+    Assert.assertTrue(hibe.ntDeterVerify(pp, mkp.pubKey, path.append(pp, msg), signature));
+    Assert.assertFalse(hibe.ntDeterVerify(pp, mkp.pubKey, path.append(pp, "forged".getBytes()), signature));
+    Assert.assertTrue(pp.ID.isEmpty());
+    Assert.assertEquals(pp.hash(epoch), path.hash(1));
+  }
+
+  @Test
+  public void expandXmdHash() {
+    for (Hibe.Curve c : Hibe.Curve.values()) {
+      BigInteger p = Hibe.getInstance(c).getPairing().getGroup1().getOrder();
+      IdentityHash xmd = IdentityHash.forOrder(p, IdentityHash.Version.EXPAND_XMD);
+      IdentityHash legacy = IdentityHash.forOrder(p);
+      Assert.assertSame(xmd, IdentityHash.forOrder(p, IdentityHash.Version.EXPAND_XMD));
+      Assert.assertNotSame(xmd, legacy);
+
+      int maxBits = 0;
+      Random random = new Random(c.ordinal());
+      for (int i = 0; i < 64; i++) {
+        byte[] id = new byte[1 + random.nextInt(300)];
+        random.nextBytes(id);
+        BigInteger h = xmd.hash(id);
+        Assert.assertTrue("bigger than p", p.compareTo(h) > 0);
+        Assert.assertEquals(h, xmd.hash(id.clone()));
+        Assert.assertNotEquals(legacy.hash(id), h);
+        maxBits = Math.max(maxBits, h.bitLength());
+      }
+      // the whole order is covered, not only 256 bits
+      Assert.assertTrue(maxBits > p.bitLength() - 8);
+
+      byte[] msg = "message".getBytes();
+      byte[] digest = new iaik.security.md.SHA256().digest(msg);
+      Assert.assertEquals(legacy.hash(msg), legacy.fromDigest(digest));
+      // the message itself is expanded, not its digest
+      Assert.assertNotEquals(xmd.hash(msg), xmd.fromDigest(digest));
+
+      for (IdentityHash hash : Arrays.asList(xmd, legacy)) {
+        IdentityHash.Stream stream = hash.newStream();
+        stream.update(msg, 0, 3);
+        stream.update(msg[3]);
+        stream.update(ByteBuffer.wrap(msg, 4, msg.length - 4));
+        Assert.assertEquals(hash.hash(msg), stream.digest());
+        // the stream is reset by digest
+        stream.update(msg, 0, msg.length);
+        Assert.assertEquals(hash.hash(msg), stream.digest());
+      }
+    }
+  }
+
+  @Test
+  public void lazyPointList() {
+    Hibe hibe = Hibe.getInstance();
+    PublicParams pp = hibe.setUp(2, new SecurityParams());
+    List<byte[]> encoded = new ArrayList<>();
+    for (ECPoint h : pp.h) {
+      encoded.add(h.encodePoint());
+    }
+    byte[] invalid = pp.h.get(0).encodePoint();
+    invalid[invalid.length - 1] ^= 1;
+    encoded.add(invalid);
+
+    // nothing is decoded up front
+    LazyPointList points = new LazyPointList(pp.G1, encoded);
+    Assert.assertEquals(3, points.size());
+    Assert.assertEquals(pp.h.get(1), points.get(1));
+    Assert.assertSame(points.get(1), points.get(1));
+    Assert.assertEquals(pp.h, points.subList(0, 2));
+    try {
+      points.get(2);
+      Assert.fail("Invalid point decoded");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
 }
@@ -5,8 +5,10 @@ import iaik.security.hibe.*;
 import iaik.security.ssl.SSLClientContext;
 import iaik.security.ssl.SSLServerContext;
 import iaik.x509.X509Certificate;
+import master.iaikProviderImpl.IaikHibeProvider;
 
 import java.security.*;
+import java.util.Collections;
 
 
 import org.apache.log4j.Logger;
@@ -26,6 +28,7 @@ public class HibeCommon {
   private X509Certificate mSvCert;
   private KeyPair mSvKp;
   private PrivateKey mCDNprivK;
+  private HIBSEpochKeyManager mEpochKeys;
 
 
   private static HibeCommon mInstance = null;
@@ -65,19 +68,17 @@ public class HibeCommon {
 
       if (!mode.equals(TlsDemoMode.MissingDelegate)) {
           byte[] domain = HibeDemoUtils.SERVER_NAME.getBytes();
-        byte[] epoch = HIBSUtils.getEpoch(HIBSUtils.EpochGranularity.Day);
         // Server
         Signature sig = Signature.getInstance("HIBE");
         sig.initSign(mSvKp.getPrivate());
         sig.update(domain);
         byte[] signature = sig.sign();
         HIBSDelPrivKey delPrivKey = new HIBSDelPrivKey(signature); //TODO find solution to stay in JSA
-        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(domain));
-        sig.initSign(delPrivKey);
-        sig.update(epoch);
-        byte[] signature2 = sig.sign();
-        //CDN
-        mCDNprivK = new HIBSDelPrivKey(signature2);
+        //CDN, delegates the key of the next epoch ahead of the rollover
+        mEpochKeys = new HIBSEpochKeyManager(delPrivKey, Collections.singletonList(domain),
+            HIBSUtils.EpochGranularity.Day);
+        IaikHibeProvider.setEpochKeyManager(mEpochKeys);
+        mCDNprivK = mEpochKeys.getCurrent().getKey();
       }
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -1,11 +1,13 @@
 package master.benchmark;
 
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.Profiler;
 import org.openjdk.jmh.profile.StackProfiler;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.util.concurrent.TimeUnit;
@@ -20,18 +22,26 @@ public abstract class ABenchmark {
 
 
   protected static void run(final Class<?> c) throws RunnerException {
+    run(c, null);
+  }
+
+  /**
+   * @param profiler additional profiler, e.g. {@link GCProfiler} for the allocation rate, may be <code>null</code>
+   */
+  protected static void run(final Class<?> c, final Class<? extends Profiler> profiler) throws RunnerException {
     long time = System.currentTimeMillis();
-    Options opt = new OptionsBuilder()
+    ChainedOptionsBuilder builder = new OptionsBuilder()
         .mode(Mode.Throughput)
         .include(c.getName())
         .shouldFailOnError(true)
         .output("Benchmarks/" + c.getSimpleName() + time + ".txt")
 //        .shouldDoGC(true) //not good for benchmarks?
         .resultFormat(ResultFormatType.CSV)
-        .result("Benchmarks/" + c.getSimpleName() + time + ".csv")
-        .build();
+        .result("Benchmarks/" + c.getSimpleName() + time + ".csv");
+    if (profiler != null)
+      builder.addProfiler(profiler);
 
-    new Runner(opt).run();
+    new Runner(builder.build()).run();
   }
 
 }
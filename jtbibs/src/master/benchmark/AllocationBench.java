@@ -0,0 +1,83 @@
+package master.benchmark;
+
+import Entities.DelegatedSecretKey;
+import Entities.IdentityPath;
+import Entities.MasterKeyPair;
+import Entities.PreparedPublicKey;
+import Entities.PublicParams;
+import Entities.SecurityParams;
+import Entities.SigningNonce;
+import HIBE.Hibe;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSProvider;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.Security;
+
+/**
+ * Handshake hot paths run with the GC profiler, see gc.alloc.rate.norm for the bytes allocated
+ * per operation. The online signature consumes a nonce prepared outside of the measurement.
+ */
+@State(Scope.Benchmark)
+public class AllocationBench extends ABenchmark {
+
+  final static byte[] mSignData = "test test test sign".getBytes();
+  final static byte[] mDomain = "example.com".getBytes();
+
+  private Hibe mHibe;
+  private HIBSKeyPairParamSpec mParams;
+  private PublicParams mPP;
+  private DelegatedSecretKey mKey;
+  private PreparedPublicKey mPubKey;
+  private ECPoint mPrefix;
+  private DelegatedSecretKey mSignature;
+  private SigningNonce mNonce;
+  private IdentityPath mPath;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    mParams = HIBSKeyPairParamSpec.create(2, new SecurityParams());
+    mHibe = mParams.getHibe();
+    mPP = mParams.getPP();
+    MasterKeyPair keys = mHibe.keyGen(mPP);
+    mKey = mHibe.delegation(mParams.getPP(), keys.secKey, mDomain);
+    mPubKey = mHibe.preparePublicKey(mPP, keys.pubKey);
+    mPrefix = mHibe.extendPrefix(mPP, mPP.g3, 0, mDomain);
+    mPath = IdentityPath.of(mPP, mDomain);
+    mSignature = mHibe.sign(mPP, mPath, mKey, mSignData);
+  }
+
+  @Setup(Level.Invocation)
+  public void prepareNonce() {
+    mNonce = mHibe.precomputeNonce(mPP, mPath, mKey);
+  }
+
+  @Benchmark
+  public DelegatedSecretKey sign() {
+    return mHibe.sign(mPP, mPath, mKey, mSignData);
+  }
+
+  @Benchmark
+  public DelegatedSecretKey signOnline() {
+    return mHibe.sign(mPP, mNonce, mSignData);
+  }
+
+  @Benchmark
+  public boolean verify() {
+    return mHibe.ntDeterVerify(mPP, mPubKey, mPrefix, mSignData, mSignature);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(AllocationBench.class, GCProfiler.class);
+  }
+}
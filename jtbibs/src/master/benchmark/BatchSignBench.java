@@ -0,0 +1,96 @@
+package master.benchmark;
+
+import Entities.SecurityParams;
+import iaik.security.hibe.HIBSAlgorithmParameterSpec;
+import iaik.security.hibe.HIBSBatchSigner;
+import iaik.security.hibe.HIBSDelPrivKey;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSProvider;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Signs a batch of messages with a delegated epoch key, one by one through the JCA signature
+ * and with the batch signer on a fork-join pool of the given parallelism.
+ */
+@State(Scope.Benchmark)
+public class BatchSignBench extends ABenchmark {
+
+  static final int MESSAGES = 256;
+
+  @Param({"1", "2", "4", "8"})
+  public int mThreads;
+
+  private final byte[] mDomain = "example.com".getBytes();
+  private final byte[] mEpoch = "01.01.2020".getBytes();
+  private HIBSDelPrivKey mKey;
+  private List<byte[]> mMessages;
+  private ForkJoinPool mPool;
+  private HIBSBatchSigner mSigner;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    KeyPairGenerator kg = KeyPairGenerator.getInstance("HIBE");
+    kg.initialize(HIBSKeyPairParamSpec.create(3, new SecurityParams()));
+    KeyPair kp = kg.generateKeyPair();
+
+    Signature sig = Signature.getInstance("HIBE");
+    sig.initSign(kp.getPrivate());
+    sig.update(mDomain);
+    HIBSDelPrivKey domainKey = new HIBSDelPrivKey(sig.sign());
+    sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(mDomain));
+    sig.initSign(domainKey);
+    sig.update(mEpoch);
+    mKey = new HIBSDelPrivKey(sig.sign());
+
+    mMessages = new ArrayList<>();
+    for (int i = 0; i < MESSAGES; i++) {
+      mMessages.add(("chunk digest " + i).getBytes());
+    }
+    mPool = new ForkJoinPool(mThreads);
+    mSigner = new HIBSBatchSigner(mKey, Arrays.asList(mDomain, mEpoch), true, mPool);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mPool.shutdown();
+  }
+
+  @Benchmark
+  public List<byte[]> signatureEngine() throws Exception {
+    List<byte[]> signatures = new ArrayList<>(MESSAGES);
+    for (byte[] message : mMessages) {
+      Signature sig = Signature.getInstance("HIBE");
+      sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(mDomain, mEpoch).setCompactSignature(true));
+      sig.initSign(new HIBSDelPrivKey(mKey.getEncoded()));
+      sig.update(message);
+      signatures.add(sig.sign());
+    }
+    return signatures;
+  }
+
+  @Benchmark
+  public List<byte[]> batchSigner() throws Exception {
+    return mSigner.sign(mMessages);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(BatchSignBench.class);
+  }
+}
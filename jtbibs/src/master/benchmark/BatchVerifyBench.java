@@ -0,0 +1,87 @@
+package master.benchmark;
+
+import Entities.DelegatedSecretKey;
+import Entities.IdentityPath;
+import Entities.MasterKeyPair;
+import Entities.PreparedPublicKey;
+import Entities.PublicParams;
+import Entities.SecurityParams;
+import HIBE.Hibe;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSProvider;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies N signatures below the same domain and epoch, one by one and as a batch.
+ * Divide the time per operation by N for the amortised cost per signature.
+ */
+@State(Scope.Benchmark)
+public class BatchVerifyBench extends ABenchmark {
+
+  @Param({"1", "10", "50", "100", "500"})
+  public int mSignatures;
+
+  private Hibe mHibe;
+  private PublicParams mPP;
+  private PreparedPublicKey mPubKey;
+  private ECPoint mPrefix;
+  private List<byte[]> mMessages;
+  private List<DelegatedSecretKey> mSigned;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    HIBSKeyPairParamSpec params = HIBSKeyPairParamSpec.create(3, new SecurityParams());
+    mHibe = params.getHibe();
+    MasterKeyPair keys = mHibe.keyGen(params.getPP());
+    mPP = params.getPP();
+    mPubKey = mHibe.preparePublicKey(mPP, keys.pubKey);
+
+    byte[] domain = "example.com".getBytes();
+    byte[] epoch = "01.01.2020".getBytes();
+    DelegatedSecretKey key = mHibe.delegation(params.getPP(), keys.secKey, domain);
+    PublicParams pp = params.getPP();
+    pp.addID(domain);
+    key = mHibe.delegation(pp, key, epoch);
+    mPrefix = mHibe.extendPrefix(mPP, mHibe.extendPrefix(mPP, mPP.g3, 0, domain), 1, epoch);
+
+    mMessages = new ArrayList<>();
+    mSigned = new ArrayList<>();
+    IdentityPath path = IdentityPath.of(mPP, domain, epoch);
+    for (int i = 0; i < mSignatures; i++) {
+      byte[] message = ("handshake " + i).getBytes();
+      mMessages.add(message);
+      mSigned.add(mHibe.sign(mPP, path, key, message));
+    }
+  }
+
+  @Benchmark
+  public boolean individual() {
+    boolean valid = true;
+    for (int i = 0; i < mSignatures; i++) {
+      valid &= mHibe.ntDeterVerify(mPP, mPubKey, mPrefix, mMessages.get(i), mSigned.get(i));
+    }
+    return valid;
+  }
+
+  @Benchmark
+  public boolean batch() {
+    return mHibe.batchVerify(mPP, mPubKey, mPrefix, mMessages, mSigned).isEmpty();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(BatchVerifyBench.class);
+  }
+}
@@ -0,0 +1,76 @@
+package master.benchmark;
+
+import Entities.DelegatedSecretKey;
+import Entities.MasterKeyPair;
+import Entities.PublicParams;
+import Entities.SecurityParams;
+import HIBE.Hibe;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSProvider;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signing below a delegated key of the given depth, once with the identity product
+ * precomputed in the key and once with a copy of the key that has to rebuild it.
+ */
+@State(Scope.Benchmark)
+public class DelegationBench extends ABenchmark {
+
+  final static byte[] mSignData = "test test test sign".getBytes();
+
+  @Param({"1", "2", "3", "5", "8"})
+  public int mDepth;
+
+  private Hibe mHibe;
+  private HIBSKeyPairParamSpec mParams;
+  private List<byte[]> mIDs;
+  private DelegatedSecretKey mKey;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    mParams = HIBSKeyPairParamSpec.create(mDepth + 1, new SecurityParams());
+    mHibe = mParams.getHibe();
+    MasterKeyPair keys = mHibe.keyGen(mParams.getPP());
+
+    mIDs = new ArrayList<>();
+    PublicParams pp = mParams.getPP();
+    for (int i = 0; i < mDepth; i++) {
+      byte[] id = ("level " + i).getBytes();
+      mIDs.add(id);
+      mKey = (i == 0) ? mHibe.delegation(pp, keys.secKey, id) : mHibe.delegation(pp, mKey, id);
+    }
+  }
+
+  private PublicParams pp() {
+    PublicParams pp = mParams.getPP();
+    pp.ID.addAll(mIDs);
+    return pp;
+  }
+
+  @Benchmark
+  public DelegatedSecretKey signPrecomputed() {
+    return mHibe.delegation(pp(), mKey, mSignData);
+  }
+
+  @Benchmark
+  public DelegatedSecretKey signWithoutPrecomputation() {
+    DelegatedSecretKey key = new DelegatedSecretKey(mKey.a0, mKey.a1, mKey.b, mKey.depth);
+    return mHibe.delegation(pp(), key, mSignData);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(DelegationBench.class);
+  }
+}
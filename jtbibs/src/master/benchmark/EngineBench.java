@@ -0,0 +1,75 @@
+package master.benchmark;
+
+import Entities.DelegatedSecretKey;
+import Entities.MasterKeyPair;
+import Entities.PublicParams;
+import Entities.SecurityParams;
+import HIBE.Hibe;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSProvider;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.Security;
+
+/**
+ * Compares signing and verifying with an engine created per operation (as done before
+ * the engines were shared) against the shared per-curve engine.
+ */
+@State(Scope.Benchmark)
+public class EngineBench extends ABenchmark {
+
+  final static byte[] mSignData = "test test test sign".getBytes();
+
+  private HIBSKeyPairParamSpec mParams;
+  private MasterKeyPair mKeys;
+  private DelegatedSecretKey mSignature;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    mParams = HIBSKeyPairParamSpec.create(1, new SecurityParams());
+    mKeys = Hibe.getInstance().keyGen(mParams.getPP());
+    mSignature = Hibe.getInstance().delegation(mParams.getPP(), mKeys.secKey, mSignData);
+  }
+
+  private DelegatedSecretKey sign(Hibe hibe) {
+    return hibe.delegation(mParams.getPP(), mKeys.secKey, mSignData);
+  }
+
+  private boolean verify(Hibe hibe) {
+    PublicParams pp = mParams.getPP();
+    pp.addID(mSignData);
+    return hibe.ntDeterVerify(pp, mKeys.pubKey, mSignature);
+  }
+
+  @Benchmark
+  public DelegatedSecretKey freshEngineSign() {
+    return sign(new Hibe());
+  }
+
+  @Benchmark
+  public DelegatedSecretKey sharedEngineSign() {
+    return sign(Hibe.getInstance());
+  }
+
+  @Benchmark
+  public boolean freshEngineVerify() {
+    return verify(new Hibe());
+  }
+
+  @Benchmark
+  public boolean sharedEngineVerify() {
+    return verify(Hibe.getInstance());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(EngineBench.class);
+  }
+}
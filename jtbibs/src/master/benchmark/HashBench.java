@@ -1,5 +1,6 @@
 package master.benchmark;
 
+import Entities.IdentityHash;
 import Entities.PublicParams;
 import Entities.SecurityParams;
 import HIBE.Hibe;
@@ -20,6 +21,7 @@ public class HashBench extends ABenchmark{
   private static Logger logger = Logger.getLogger(VerifyBench.class);
   private Hibe mHibe;
   private PublicParams mPP;
+  private IdentityHash mXmd;
   private byte[] mRandomBytes;
 
   @Setup(Level.Trial)
@@ -29,8 +31,9 @@ public class HashBench extends ABenchmark{
     HibeCommon.sDebug = false;
     LogManager.shutdown();
 
-    mHibe = new Hibe();
+    mHibe = Hibe.getInstance(Hibe.Curve.BN_P461);
     mPP = mHibe.setUp(1, new SecurityParams(HIBScurve.BN_P461));
+    mXmd = IdentityHash.forOrder(mPP.p, IdentityHash.Version.EXPAND_XMD);
   }
   @Setup(Level.Iteration)
   public void setUp2() throws Exception {
@@ -44,6 +47,11 @@ public class HashBench extends ABenchmark{
     BigInteger bi = mPP.hash(mRandomBytes);
   }
 
+  @Benchmark
+  public BigInteger hashExpandXmd() {
+    return mXmd.hash(mRandomBytes);
+  }
+
   public static void main(String[] args) throws RunnerException {
     run(HashBench.class);
   }
@@ -0,0 +1,80 @@
+package master.benchmark;
+
+import Entities.DelegatedSecretKey;
+import Entities.MasterKeyPair;
+import Entities.PublicParams;
+import Entities.SecurityParams;
+import HIBE.Hibe;
+import iaik.security.ec.math.curve.ECPoint;
+import iaik.security.hibe.HIBSKeyPairParamSpec;
+import iaik.security.hibe.HIBSPointCodec;
+import iaik.security.hibe.HIBSProvider;
+import iaik.security.hibe.HIBScurve;
+import master.HibeCommon;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.security.Security;
+
+/**
+ * Decoding cost of compressed against uncompressed points, for a_0 in G1 and a_1 in G2 of a
+ * signature. The sizes of both encodings are printed during setup.
+ */
+@State(Scope.Benchmark)
+public class PointCompressionBench extends ABenchmark {
+
+  @Param({"BN_P256", "BN_P461", "BN_P638", "ISO_P512"})
+  public HIBScurve mCurve;
+
+  private HIBSKeyPairParamSpec mParams;
+  private byte[] mG1Uncompressed;
+  private byte[] mG1Compressed;
+  private byte[] mG2Uncompressed;
+  private byte[] mG2Compressed;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    System.out.println("main setup");
+    Security.addProvider(new HIBSProvider());
+    HibeCommon.sDebug = false;
+    LogManager.shutdown();
+
+    mParams = HIBSKeyPairParamSpec.create(1, new SecurityParams(mCurve));
+    Hibe hibe = mParams.getHibe();
+    PublicParams pp = mParams.getPP();
+    MasterKeyPair keys = hibe.keyGen(pp);
+    DelegatedSecretKey signature = hibe.sign(pp, keys.secKey, "test test test sign".getBytes());
+
+    mG1Uncompressed = signature.a0.encodePoint();
+    mG1Compressed = HIBSPointCodec.compress(signature.a0);
+    mG2Uncompressed = signature.a1.encodePoint();
+    mG2Compressed = HIBSPointCodec.compress(signature.a1);
+    System.out.println(mCurve + ": G1 " + mG1Uncompressed.length + " -> " + mG1Compressed.length
+        + " bytes, G2 " + mG2Uncompressed.length + " -> " + mG2Compressed.length + " bytes");
+  }
+
+  @Benchmark
+  public ECPoint decodeG1Uncompressed() throws Exception {
+    return mParams.getG1().decodePoint(mG1Uncompressed);
+  }
+
+  @Benchmark
+  public ECPoint decodeG1Compressed() throws Exception {
+    return mParams.getG1().decodePoint(mG1Compressed);
+  }
+
+  @Benchmark
+  public ECPoint decodeG2Uncompressed() throws Exception {
+    return mParams.getG2().decodePoint(mG2Uncompressed);
+  }
+
+  @Benchmark
+  public ECPoint decodeG2Compressed() throws Exception {
+    return mParams.getG2().decodePoint(mG2Compressed);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    run(PointCompressionBench.class);
+  }
+}
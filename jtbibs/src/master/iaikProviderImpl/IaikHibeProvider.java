@@ -12,6 +12,7 @@ import java.util.Arrays;
 
 import Entities.SecurityParams;
 import iaik.security.hibe.HIBSAlgorithmParameterSpec;
+import iaik.security.hibe.HIBSEpochKeyManager;
 import iaik.security.hibe.HIBSKeyPairParamSpec;
 import iaik.security.hibe.HIBSPublicKey;
 import iaik.security.hibe.HIBSUtils;
@@ -20,6 +21,31 @@ import iaik.security.ssl.*;
 public class IaikHibeProvider extends ECCelerateProvider {
 
   final static String ALG_SIGNATURE_HIBE = "HIBE";
+
+  /**
+   * Parameters for ephemeral HIBE key pairs, set up once and shared by all handshakes.
+   */
+  private static volatile HIBSKeyPairParamSpec sEphemeralParams;
+
+  /**
+   * Epoch keys of the served domain, handshakes for it are signed with the current epoch key.
+   */
+  private static volatile HIBSEpochKeyManager sEpochKeys;
+
+  public static void setEpochKeyManager(HIBSEpochKeyManager epochKeys) {
+    sEpochKeys = epochKeys;
+  }
+
+  private static HIBSKeyPairParamSpec getEphemeralParams() {
+    if (sEphemeralParams == null) {
+      synchronized (IaikHibeProvider.class) {
+        if (sEphemeralParams == null) {
+          sEphemeralParams = HIBSKeyPairParamSpec.create(3, new SecurityParams());
+        }
+      }
+    }
+    return sEphemeralParams;
+  }
   @Override
   public SupportedEllipticCurves.NamedCurve getCurve(PublicKey publicKey) {
     if (publicKey instanceof HIBSPublicKey){
@@ -39,7 +65,7 @@ public class IaikHibeProvider extends ECCelerateProvider {
   public KeyPair generateECKeyPair(SupportedEllipticCurves supportedEllipticCurves, SupportedPointFormats supportedPointFormats) throws Exception {
     if (Arrays.asList(supportedEllipticCurves.getEllipticCurveList()).contains(SupportedEllipticCurves.HIBE)) {
       KeyPairGenerator kpg = KeyPairGenerator.getInstance("HIBE");
-      kpg.initialize(HIBSKeyPairParamSpec.create(3, new SecurityParams()));
+      kpg.initialize(getEphemeralParams());
       return kpg.generateKeyPair();
     }
     return super.generateECKeyPair(supportedEllipticCurves, supportedPointFormats);
@@ -64,7 +90,8 @@ public class IaikHibeProvider extends ECCelerateProvider {
   @Override
   public SupportedPointFormats.ECPointFormat getECPointFormat(PublicKey publicKey) {
     if (publicKey instanceof HIBSPublicKey) {
-      return SupportedPointFormats.PF_UNCOMPRESSED;
+      return ((HIBSPublicKey) publicKey).getParams().isPointCompression() ? SupportedPointFormats.PF_COMPRESSED_PRIME
+          : SupportedPointFormats.PF_UNCOMPRESSED;
     }
     return super.getECPointFormat(publicKey);
   }
@@ -103,8 +130,20 @@ public class IaikHibeProvider extends ECCelerateProvider {
 
       if (serverNames != null && serverNames.length != 0) {
         byte[] domain = serverNames[0].getEncodedName(); //currently the domain, but could be a subdomain for fine-grained privilege delegation
-        byte[] epoch = HIBSUtils.getEpoch(HIBSUtils.EpochGranularity.Day);
-        sig.setParameter(new HIBSAlgorithmParameterSpec().addDelegateIDs(domain, epoch));
+        HIBSEpochKeyManager epochKeys = sEpochKeys;
+        HIBSAlgorithmParameterSpec spec;
+        if (key instanceof PrivateKey && epochKeys != null && epochKeys.isDelegatedTo(domain)) {
+          // the key and epoch were delegated in the background
+          HIBSEpochKeyManager.EpochKey current = epochKeys.getCurrent();
+          key = current.getKey();
+          spec = current.newParameterSpec();
+        } else {
+          byte[] epoch = HIBSUtils.getEpoch(HIBSUtils.EpochGranularity.Day);
+          spec = new HIBSAlgorithmParameterSpec().addDelegateIDs(domain, epoch);
+        }
+        // handshake signatures are never delegated further, so only a_0 and a_1 are sent,
+        // the message independent part is precomputed in the background
+        sig.setParameter(spec.setCompactSignature(true).setPrecomputedNonces(true));
       } else throw new Exception("No SNI set");
 
       if (key instanceof PrivateKey) {